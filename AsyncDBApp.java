@@ -0,0 +1,262 @@
+
+import exceptions.DBAppException;
+import model.SQLTerm;
+import model.Tuple;
+import Utils.Utils;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Asynchronous facade over a DBApp, every method returns at once with a future completed once the operation is done.
+// Operations run on a thread per task, virtual threads if the JVM has them, otherwise a cached pool of platform threads.
+// A table has at most AsyncMaxPendingRequests operations admitted at once, beyond that the returned future fails
+// at once with a RejectedExecutionException instead of the caller waiting.
+// Inserts, updates and deletes on the same table are queued and done in the order they were called by a single task,
+// single row inserts next to each other in the queue are inserted together as one batch, so concurrent small inserts
+// share the page writes and the log record of one batch insert. Selects are not queued, a select sees the writes
+// done before it runs, wait for the future of a write to be sure a select sees it.
+public class AsyncDBApp {
+    private final DBApp dbApp;
+    private final ExecutorService executor;
+    private final ConcurrentHashMap<String, TableQueue> htblTableQueue; // admission and pending writes of every table
+    private final int maxPendingRequests;
+    private final int maxBatchSize;
+
+    // dbApp must already be initialized
+    public AsyncDBApp(DBApp dbApp) throws IOException {
+        this.dbApp = dbApp;
+        this.executor = createExecutor();
+        this.htblTableQueue = new ConcurrentHashMap<>();
+        this.maxPendingRequests = Utils.getAsyncMaxPendingRequests();
+        this.maxBatchSize = Utils.getAsyncMaxBatchSize();
+    }
+
+
+    public CompletableFuture<Void> insertAsync(String strTableName, Hashtable<String, Object> htblColNameValue) {
+        return queue(strTableName, new PendingWrite(htblColNameValue, null));
+    }
+
+    public CompletableFuture<Void> insertAsync(String strTableName, List<Hashtable<String, Object>> lstColNameValue) {
+        return queue(strTableName, new PendingWrite(null, () -> {
+            dbApp.insertIntoTable(strTableName, lstColNameValue);
+            return null;
+        }));
+    }
+
+    public CompletableFuture<Void> updateAsync(String strTableName, String strClusteringKeyValue, Hashtable<String, Object> htblColNameValue) {
+        return queue(strTableName, new PendingWrite(null, () -> {
+            dbApp.updateTable(strTableName, strClusteringKeyValue, htblColNameValue);
+            return null;
+        }));
+    }
+
+    public CompletableFuture<Void> deleteAsync(String strTableName, Hashtable<String, Object> htblColNameValue) {
+        return queue(strTableName, new PendingWrite(null, () -> {
+            dbApp.deleteFromTable(strTableName, htblColNameValue);
+            return null;
+        }));
+    }
+
+    // Unlike selectFromTable the result is read before the future completes, so the consumer never reads pages.
+    // The iterator goes over the matching tuples sorted by clusterKey
+    public CompletableFuture<Iterator> selectAsync(SQLTerm[] arrSQLTerms, String[] strarrOperators) {
+        String strTableName = arrSQLTerms == null || arrSQLTerms.length == 0 ? null : arrSQLTerms[0].getTableName();
+        return run(strTableName, () -> {
+            Vector<Tuple> tuples = new Vector<>();
+            Iterator iterator = dbApp.selectFromTable(arrSQLTerms, strarrOperators);
+            while (iterator.hasNext())
+                tuples.add((Tuple) iterator.next());
+            return tuples.iterator();
+        });
+    }
+
+    public CompletableFuture<Void> flushAsync() {
+        return run(null, () -> {
+            dbApp.flush();
+            return null;
+        });
+    }
+
+    // Waits for the operations already submitted then stops the threads, the DBApp is not flushed
+    public void close() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+
+    // Helper methods
+    // Runs the operation once a permit of the table is taken, strTableName is null for operations on no table
+    private <T> CompletableFuture<T> run(String strTableName, Operation<T> operation) {
+        Semaphore permits = strTableName == null ? null : getTableQueue(strTableName).permits;
+        CompletableFuture<T> future = new CompletableFuture<>();
+        if (permits != null && !permits.tryAcquire()) {
+            future.completeExceptionally(getRejection(strTableName));
+            return future;
+        }
+
+        submit(() -> {
+            try {
+                future.complete(operation.run());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            } finally {
+                if (permits != null)
+                    permits.release();
+            }
+        });
+        return future;
+    }
+
+    // Queues the write once a permit of the table is taken and starts a drain of the table if none runs
+    private CompletableFuture<Void> queue(String strTableName, PendingWrite pendingWrite) {
+        TableQueue tableQueue = getTableQueue(strTableName);
+        if (!tableQueue.permits.tryAcquire()) {
+            pendingWrite.future.completeExceptionally(getRejection(strTableName));
+            return pendingWrite.future;
+        }
+
+        tableQueue.pendingWrites.add(pendingWrite);
+        if (tableQueue.isDraining.compareAndSet(false, true))
+            submit(() -> drain(strTableName, tableQueue));
+
+        return pendingWrite.future;
+    }
+
+    // Does the queued writes of the table in order until the queue is empty, only one drain runs per table.
+    // Single row inserts next to each other are taken together as one batch
+    private void drain(String strTableName, TableQueue tableQueue) {
+        while (true) {
+            PendingWrite pendingWrite = tableQueue.pendingWrites.poll();
+            if (pendingWrite == null) {
+                tableQueue.isDraining.set(false);
+                // a write queued after the poll but before isDraining was cleared did not start a drain
+                if (tableQueue.pendingWrites.isEmpty() || !tableQueue.isDraining.compareAndSet(false, true))
+                    return;
+                continue;
+            }
+
+            if (pendingWrite.operation != null) {
+                try {
+                    pendingWrite.operation.run();
+                    pendingWrite.future.complete(null);
+                } catch (Throwable e) {
+                    pendingWrite.future.completeExceptionally(e);
+                }
+                tableQueue.permits.release();
+                continue;
+            }
+
+            Vector<PendingWrite> batch = new Vector<>();
+            batch.add(pendingWrite);
+            PendingWrite next;
+            while (batch.size() < maxBatchSize && (next = tableQueue.pendingWrites.peek()) != null && next.operation == null)
+                batch.add(tableQueue.pendingWrites.poll());
+
+            insertBatch(strTableName, batch);
+            tableQueue.permits.release(batch.size());
+        }
+    }
+
+    // A batch fails as a whole if one of its rows is invalid or already exists, the table is then unchanged
+    // and the rows are inserted one at a time so that every insert gets its own result
+    private void insertBatch(String strTableName, Vector<PendingWrite> batch) {
+        if (batch.size() > 1) {
+            Vector<Hashtable<String, Object>> rows = new Vector<>(batch.size());
+            for (PendingWrite pendingWrite : batch)
+                rows.add(pendingWrite.htblColNameValue);
+
+            try {
+                dbApp.insertIntoTable(strTableName, rows);
+                for (PendingWrite pendingWrite : batch)
+                    pendingWrite.future.complete(null);
+                return;
+            } catch (DBAppException e) {
+                // inserted one at a time below
+            } catch (Throwable e) {
+                for (PendingWrite pendingWrite : batch)
+                    pendingWrite.future.completeExceptionally(e);
+                return;
+            }
+        }
+
+        for (PendingWrite pendingWrite : batch) {
+            try {
+                dbApp.insertIntoTable(strTableName, pendingWrite.htblColNameValue);
+                pendingWrite.future.complete(null);
+            } catch (Throwable e) {
+                pendingWrite.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private RejectedExecutionException getRejection(String strTableName) {
+        return new RejectedExecutionException("Table " + strTableName + " already has " + maxPendingRequests + " pending operations");
+    }
+
+    private TableQueue getTableQueue(String strTableName) {
+        return htblTableQueue.computeIfAbsent(strTableName, k -> new TableQueue(maxPendingRequests));
+    }
+
+    private void submit(Runnable task) {
+        executor.execute(task);
+    }
+
+    // The project is compiled for Java 11 (maven.compiler.release in pom.xml) and virtual threads came in Java 21,
+    // so Executors.newVirtualThreadPerTaskExecutor is looked up at runtime: Java 21 and later JVMs run the writes on
+    // virtual threads, Java 11 to 20 on a cached pool of daemon threads
+    private static ExecutorService createExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "AsyncDBApp");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+
+    private interface Operation<T> {
+        T run() throws Exception;
+    }
+
+    // A single row insert if htblColNameValue is set, otherwise any other write done by operation
+    private static class PendingWrite {
+        private final Hashtable<String, Object> htblColNameValue;
+        private final Operation<Void> operation;
+        private final CompletableFuture<Void> future;
+
+        private PendingWrite(Hashtable<String, Object> htblColNameValue, Operation<Void> operation) {
+            this.htblColNameValue = htblColNameValue;
+            this.operation = operation;
+            this.future = new CompletableFuture<>();
+        }
+    }
+
+    private static class TableQueue {
+        private final Semaphore permits; // one per admitted operation on the table
+        private final ConcurrentLinkedQueue<PendingWrite> pendingWrites;
+        private final AtomicBoolean isDraining; // true while a drain task runs for the table
+
+        private TableQueue(int maxPendingRequests) {
+            this.permits = new Semaphore(maxPendingRequests);
+            this.pendingWrites = new ConcurrentLinkedQueue<>();
+            this.isDraining = new AtomicBoolean(false);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package index;
+
+import Utils.Utils;
+import model.Tuple;
+
+import java.util.Vector;
+
+// B+ tree on one non clustering column. Every key of a leaf holds the entries of all tuples having that value.
+// Deleting only removes entries, nodes are not merged so a leaf can become empty but it is still linked
+// to its next leaf and is skipped while searching.
+// The tree is kept in memory, its nodes are not pages of the segment and do not go through the buffer pool.
+// It is written to disk as the list of its entries, see PageFormat.encodeIndex, and built again from that list
+// when read. Every flush or checkpoint that finds the index changed rewrites its whole file, so one changed
+// entry costs I/O in the number of entries of the index instead of only the changed nodes.
+public class BPlusTree implements Index {
+    public static final String INDEX_TYPE = "B+tree";
+
+    private final String indexName;
+    private final String colName;
+    private final int order; // maximum number of keys in a node
+    private Node root;
+
+    public BPlusTree(String indexName, String colName, int order) {
+        this.indexName = indexName;
+        this.colName = colName;
+        this.order = Math.max(3, order);
+        this.root = new LeafNode();
+    }
+
+
+    public synchronized void insert(Tuple tuple, int pageIndex) {
+        Comparable key = (Comparable) tuple.getColValue(colName);
+        Split split = root.insert(key, new IndexEntry(pageIndex, tuple.getClusterKeyValue()), order);
+        if (split == null)
+            return;
+
+        InternalNode newRoot = new InternalNode();
+        newRoot.keys.add(split.key);
+        newRoot.children.add(root);
+        newRoot.children.add(split.node);
+        root = newRoot;
+    }
+
+    public synchronized void delete(Tuple tuple) {
+        Vector<IndexEntry> bucket = getBucket(tuple);
+        if (bucket == null)
+            return;
+
+        int i = indexOfEntry(bucket, tuple.getClusterKeyValue());
+        if (i >= 0)
+            bucket.remove(i);
+
+        if (bucket.isEmpty()) {
+            LeafNode leaf = findLeaf((Comparable) tuple.getColValue(colName));
+            int keyIndex = Utils.binarySearch(leaf.keys, (Comparable) tuple.getColValue(colName));
+            leaf.keys.remove(keyIndex);
+            leaf.values.remove(keyIndex);
+        }
+    }
+
+    public synchronized void updatePageIndex(Tuple tuple, int pageIndex) {
+        Vector<IndexEntry> bucket = getBucket(tuple);
+        if (bucket == null)
+            return;
+
+        int i = indexOfEntry(bucket, tuple.getClusterKeyValue());
+        if (i >= 0)
+            bucket.get(i).setPageIndex(pageIndex);
+    }
+
+    // returns entries of all tuples whose value equals key
+    public synchronized Vector<IndexEntry> search(Comparable key) {
+        return search(key, true, key, true);
+    }
+
+    // returns entries of all tuples whose value is between min and max, a null bound means no bound
+    public synchronized Vector<IndexEntry> search(Comparable min, boolean minInclusive, Comparable max, boolean maxInclusive) {
+        Vector<IndexEntry> result = new Vector<>();
+        LeafNode leaf = min == null ? findFirstLeaf() : findLeaf(min);
+
+        for (; leaf != null; leaf = leaf.next)
+            for (int i = 0; i < leaf.keys.size(); i++) {
+                Comparable key = leaf.keys.get(i);
+                if (min != null && (minInclusive ? key.compareTo(min) < 0 : key.compareTo(min) <= 0))
+                    continue;
+                if (max != null && (maxInclusive ? key.compareTo(max) > 0 : key.compareTo(max) >= 0))
+                    return result;
+
+                result.addAll(leaf.values.get(i));
+            }
+
+        return result;
+    }
+
+    public synchronized void getEntries(Vector<Comparable[]> values, Vector<IndexEntry> entries) {
+        for (LeafNode leaf = findFirstLeaf(); leaf != null; leaf = leaf.next)
+            for (int i = 0; i < leaf.keys.size(); i++)
+                for (IndexEntry entry : leaf.values.get(i)) {
+                    values.add(new Comparable[]{leaf.keys.get(i)});
+                    entries.add(entry);
+                }
+    }
+
+    public String getIndexName() {
+        return indexName;
+    }
+
+    public String getIndexType() {
+        return INDEX_TYPE;
+    }
+
+    public String[] getColumnNames() {
+        return new String[]{colName};
+    }
+
+
+    // Helper methods
+    private Vector<IndexEntry> getBucket(Tuple tuple) {
+        Comparable key = (Comparable) tuple.getColValue(colName);
+        LeafNode leaf = findLeaf(key);
+        int keyIndex = Utils.binarySearch(leaf.keys, key);
+
+        return keyIndex < 0 ? null : leaf.values.get(keyIndex);
+    }
+
+    private static int indexOfEntry(Vector<IndexEntry> bucket, Object clusterKeyValue) {
+        for (int i = 0; i < bucket.size(); i++)
+            if (bucket.get(i).getClusterKeyValue().equals(clusterKeyValue))
+                return i;
+        return -1;
+    }
+
+    private LeafNode findLeaf(Comparable key) {
+        Node node = root;
+        while (node instanceof InternalNode) {
+            InternalNode internalNode = (InternalNode) node;
+            node = internalNode.children.get(internalNode.getChildIndex(key));
+        }
+        return (LeafNode) node;
+    }
+
+    private LeafNode findFirstLeaf() {
+        Node node = root;
+        while (node instanceof InternalNode)
+            node = ((InternalNode) node).children.get(0);
+        return (LeafNode) node;
+    }
+
+    private abstract static class Node {
+        protected final Vector<Comparable> keys = new Vector<>();
+
+        // returns the new right sibling and its separator key if the node was split, null otherwise
+        abstract Split insert(Comparable key, IndexEntry entry, int order);
+    }
+
+    private static class LeafNode extends Node {
+        private final Vector<Vector<IndexEntry>> values = new Vector<>(); // entries of keys[i] are values[i]
+        private LeafNode next;
+
+        Split insert(Comparable key, IndexEntry entry, int order) {
+            int keyIndex = Utils.binarySearch(keys, key);
+            if (keyIndex >= 0) { // duplicate value, add to its entries
+                values.get(keyIndex).add(entry);
+                return null;
+            }
+
+            keyIndex = Utils.getInsertionIndex(keyIndex);
+            Vector<IndexEntry> bucket = new Vector<>();
+            bucket.add(entry);
+            keys.add(keyIndex, key);
+            values.add(keyIndex, bucket);
+
+            if (keys.size() <= order)
+                return null;
+
+            LeafNode right = new LeafNode();
+            int mid = keys.size() / 2;
+            right.keys.addAll(keys.subList(mid, keys.size()));
+            right.values.addAll(values.subList(mid, values.size()));
+            keys.setSize(mid);
+            values.setSize(mid);
+
+            right.next = next;
+            next = right;
+            return new Split(right.keys.get(0), right);
+        }
+    }
+
+    private static class InternalNode extends Node {
+        private final Vector<Node> children = new Vector<>(); // children[i] holds keys < keys[i] <= children[i + 1]
+
+        int getChildIndex(Comparable key) {
+            int index = Utils.binarySearch(keys, key);
+            return index >= 0 ? index + 1 : Utils.getInsertionIndex(index);
+        }
+
+        Split insert(Comparable key, IndexEntry entry, int order) {
+            int childIndex = getChildIndex(key);
+            Split childSplit = children.get(childIndex).insert(key, entry, order);
+            if (childSplit == null)
+                return null;
+
+            keys.add(childIndex, childSplit.key);
+            children.add(childIndex + 1, childSplit.node);
+
+            if (keys.size() <= order)
+                return null;
+
+            InternalNode right = new InternalNode();
+            int mid = keys.size() / 2;
+            Comparable separator = keys.get(mid);
+            right.keys.addAll(keys.subList(mid + 1, keys.size()));
+            right.children.addAll(children.subList(mid + 1, children.size()));
+            keys.setSize(mid);
+            children.setSize(mid + 1);
+
+            return new Split(separator, right);
+        }
+    }
+
+    private static class Split {
+        private final Comparable key;
+        private final Node node;
+
+        private Split(Comparable key, Node node) {
+            this.key = key;
+            this.node = node;
+        }
+    }
+}
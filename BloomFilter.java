@@ -0,0 +1,88 @@
+package Page;
+
+import java.util.Collection;
+
+// Bloom filter of the values of one column in one page: a value the filter does not have is not in the page, a value
+// it has is in the page or is a false positive, at about the rate the filter was built for.
+// Values are hashed with hashCode, which String, Integer, Double and Date compute the same way on every JVM,
+// so filters are written to the table file with the page references.
+// A filter never changes once built, queries read it without the page latch. Adding a value builds a copy, see with
+public class BloomFilter {
+    private final long[] bits;
+    private final int hashCount;
+
+    // Used when reading a table from disk
+    public BloomFilter(long[] bits, int hashCount) {
+        this.bits = bits;
+        this.hashCount = hashCount;
+    }
+
+    // falsePositiveRate sets the bits per value: about 10 bits and 7 hashes for 1%, 14 bits and 10 hashes for 0.1%.
+    // The filter is sized for capacity values, or for all of values if there are more, so that the values added
+    // to the page later keep it at the rate
+    public static BloomFilter create(Collection<Comparable> values, int capacity, double falsePositiveRate) {
+        double bitsPerValue = -Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        long bitsCount = Math.max(64, (long) Math.ceil(Math.max(capacity, values.size()) * bitsPerValue));
+        int hashCount = (int) Math.max(1, Math.min(30, Math.round(bitsPerValue * Math.log(2))));
+
+        long[] bits = new long[(int) ((bitsCount + 63) / 64)];
+        for (Comparable value : values)
+            setBits(bits, hashCount, value);
+        return new BloomFilter(bits, hashCount);
+    }
+
+    public boolean mayContain(Object value) {
+        long hash = hash(value);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        long bitsCount = (long) bits.length * 64;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = ((hash1 + (long) i * hash2) & Long.MAX_VALUE) % bitsCount;
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    // Used by PageReference to widen the filter with a value added to the page: returns a copy having the value,
+    // or this filter if it already has it
+    BloomFilter with(Object value) {
+        if (mayContain(value))
+            return this;
+        long[] copy = bits.clone();
+        setBits(copy, hashCount, value);
+        return new BloomFilter(copy, hashCount);
+    }
+
+    public long[] getBits() {
+        return bits;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+
+    // Helper methods
+    private static void setBits(long[] bits, int hashCount, Object value) {
+        long hash = hash(value);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        long bitsCount = (long) bits.length * 64;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = ((hash1 + (long) i * hash2) & Long.MAX_VALUE) % bitsCount;
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    // Spreads the 32 bits of hashCode over 64 bits (murmur3 finalizer), the two halves are the two hashes combined
+    private static long hash(Object value) {
+        long h = value.hashCode();
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
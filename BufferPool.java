@@ -0,0 +1,238 @@
+package Utils;
+
+import Page.Page;
+import exceptions.DBNotFoundException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Vector;
+
+// Keeps a bounded number of pages in memory in front of the page files.
+// Pages are evicted in LRU order, pinned pages are never evicted and dirty pages
+// are only written back to disk when they are evicted or flushed.
+// With noSteal set dirty pages are not evicted either, they stay in memory until the next checkpoint writes them.
+public class BufferPool {
+    private final int capacity; // maximum number of pages kept in memory
+    private final SerializationManager serializationManager;
+    private final LinkedHashMap<String, Frame> frames; // access ordered, first entry is the least recently used
+    private boolean noSteal;
+
+    public BufferPool(int capacity, SerializationManager serializationManager) {
+        this.capacity = Math.max(1, capacity);
+        this.serializationManager = serializationManager;
+        this.frames = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+
+    // Returns the page and pins it, the page is read from disk only if it is not already in memory.
+    // The page file is read and decoded without holding the pool lock so that parallel scans read pages concurrently.
+    // A loading frame is admitted first: other threads fetching the page wait for it instead of reading it again,
+    // and since the page is not in the pool meanwhile it can not be written back while it is read
+    public Page fetchPage(String tableName, int pageIndex) throws IOException, DBNotFoundException {
+        String key = getKey(tableName, pageIndex);
+        Frame frame;
+        synchronized (this) {
+            frame = frames.get(key);
+            while (frame != null && frame.isLoading) {
+                waitForLoad();
+                frame = frames.get(key);
+            }
+            if (frame != null) {
+                frame.pinCount++;
+                DBAppMetrics.forTable(tableName).recordBufferPoolAccess(true);
+                return frame.page;
+            }
+
+            frame = new Frame(null);
+            frame.isLoading = true;
+            frame.pinCount = 1; // never evicted while loading
+            admit(key, frame);
+        }
+
+        DBAppMetrics.forTable(tableName).recordBufferPoolAccess(false);
+        Page page;
+        try {
+            page = serializationManager.readPage(tableName, pageIndex);
+        } catch (IOException | DBNotFoundException | RuntimeException e) {
+            synchronized (this) {
+                if (frames.get(key) == frame)
+                    frames.remove(key);
+                notifyAll(); // waiting threads read the page themselves
+            }
+            throw e;
+        }
+
+        synchronized (this) {
+            if (frame.isLoading) { // otherwise putPage replaced the page meanwhile, its page is the newer one
+                frame.page = page;
+                frame.isLoading = false;
+            }
+            notifyAll();
+            return frame.page; // if the page was removed meanwhile the frame is not in the pool anymore
+        }
+    }
+
+    public synchronized void unpinPage(Page page, boolean isDirty) {
+        Frame frame = frames.get(getKey(page.getTableName(), page.getPageIndex()));
+        if (frame == null || frame.page != page) // removed, or another page now has its pageIndex
+            return;
+
+        if (frame.pinCount > 0)
+            frame.pinCount--;
+        if (isDirty) {
+            frame.isDirty = true;
+            frame.version++;
+        }
+    }
+
+    // Puts a new or modified page in the pool and marks it dirty, it is written to disk later
+    public synchronized void putPage(Page page) throws IOException {
+        String key = getKey(page.getTableName(), page.getPageIndex());
+        Frame frame = frames.get(key);
+        if (frame == null) {
+            frame = new Frame(page);
+            admit(key, frame);
+        }
+
+        frame.page = page;
+        frame.isDirty = true;
+        frame.version++;
+        if (frame.isLoading) { // the page being read is older than this one
+            frame.isLoading = false;
+            notifyAll();
+        }
+    }
+
+    // Drops the page from the pool without writing it, used when the page file is deleted
+    public synchronized void removePage(String tableName, int pageIndex) {
+        frames.remove(getKey(tableName, pageIndex));
+    }
+
+    public synchronized void flushPage(String tableName, int pageIndex) throws IOException {
+        Frame frame = frames.get(getKey(tableName, pageIndex));
+        if (frame != null)
+            writeBack(frame);
+    }
+
+    public synchronized void flushTable(String tableName) throws IOException {
+        for (Frame frame : frames.values())
+            if (!frame.isLoading && frame.page.getTableName().equals(tableName))
+                writeBack(frame);
+    }
+
+    public synchronized void flushAll() throws IOException {
+        for (Frame frame : frames.values())
+            writeBack(frame);
+    }
+
+    // Drops every page of the table from the pool, dirty pages are not written
+    public synchronized void discardTable(String tableName) {
+        Vector<String> keys = new Vector<>();
+        for (Map.Entry<String, Frame> entry : frames.entrySet())
+            if (entry.getKey().startsWith(tableName + "/"))
+                keys.add(entry.getKey());
+
+        for (String key : keys)
+            frames.remove(key);
+    }
+
+    // Returns the dirty pages and adds the version of each one to versions, used by a checkpoint to write them
+    public synchronized Vector<Page> getDirtyPages(Vector<Long> versions) {
+        Vector<Page> pages = new Vector<>();
+        for (Frame frame : frames.values())
+            if (frame.isDirty) {
+                pages.add(frame.page);
+                versions.add(frame.version);
+            }
+        return pages;
+    }
+
+    // Marks the pages clean once a checkpoint wrote them, a page changed since its version was taken stays dirty
+    public synchronized void markClean(Vector<Page> pages, Vector<Long> versions) {
+        for (int i = 0; i < pages.size(); i++) {
+            Page page = pages.get(i);
+            Frame frame = frames.get(getKey(page.getTableName(), page.getPageIndex()));
+            if (frame != null && frame.page == page && frame.version == versions.get(i))
+                frame.isDirty = false;
+        }
+    }
+
+    public synchronized void setNoSteal(boolean noSteal) {
+        this.noSteal = noSteal;
+    }
+
+    // true if pinned or dirty pages made the pool grow past its capacity
+    public synchronized boolean isOverCapacity() {
+        return frames.size() > capacity;
+    }
+
+    public synchronized int getSize() {
+        return frames.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+
+    // Helper methods
+    private void admit(String key, Frame frame) throws IOException {
+        evictIfNeeded();
+        frames.put(key, frame);
+    }
+
+    // Evicts least recently used unpinned pages until there is room for one more page.
+    // If all pages are pinned (or dirty with noSteal) the pool is allowed to grow past its capacity.
+    private void evictIfNeeded() throws IOException {
+        Iterator<Frame> iterator = frames.values().iterator();
+        while (frames.size() >= capacity && iterator.hasNext()) {
+            Frame frame = iterator.next();
+            if (frame.pinCount > 0 || (noSteal && frame.isDirty))
+                continue;
+
+            writeBack(frame);
+            iterator.remove();
+        }
+    }
+
+    private void waitForLoad() throws InterruptedIOException {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a page to be read");
+        }
+    }
+
+    private void writeBack(Frame frame) throws IOException {
+        if (!frame.isDirty)
+            return;
+
+        serializationManager.writePage(frame.page);
+        frame.isDirty = false;
+    }
+
+    private static String getKey(String tableName, int pageIndex) {
+        return tableName + "/" + pageIndex;
+    }
+
+
+    private static class Frame {
+        private Page page; // null while loading
+        private int pinCount;
+        private boolean isDirty;
+        private boolean isLoading; // true while the page is read by fetchPage
+        private long version; // incremented each time the page is changed
+
+        private Frame(Page page) {
+            this.page = page;
+            this.pinCount = 0;
+            this.isDirty = false;
+            this.isLoading = false;
+            this.version = 0;
+        }
+    }
+}
@@ -1,27 +1,60 @@
 
 import Page.Page;
+import Utils.DBAppMetrics;
+import Utils.DBAppMetricsMXBean;
+import Utils.PageCodec;
 import Utils.SerializationManager;
+import Utils.Utils;
 import Utils.Validation;
+import Utils.WriteAheadLog;
+import index.BPlusTree;
+import index.Octree;
 import exceptions.*;
 import Utils.MetaDataManager;
 import model.SQLTerm;
 import model.Table;
+import model.TableSchema;
 import model.Tuple;
+import query.LogicalPredicate;
+import query.Predicate;
+import query.QueryPlanner;
+import query.TermPredicate;
 
 import java.text.ParseException;
 import java.util.*;
 import java.io.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class DBApp {
     private MetaDataManager metaDataManager;
     private SerializationManager serializationManager;
+    // Operations changing tables hold the read lock, checkpoints hold the write lock so they only see complete operations.
+    // Each table also has its own lock: selects and inserts into pages with room hold its read lock, and latch
+    // the pages they read or change, other writers to the table hold its write lock
+    private final ReentrantReadWriteLock checkpointLock = new ReentrantReadWriteLock();
+    // Checkpoints needed because the log or the dirty pages grew are taken by this thread, the operation that
+    // found one needed does not wait for it. A failure is thrown by the next operation that checks for a checkpoint
+    private ExecutorService checkpointExecutor;
+    private final AtomicBoolean isCheckpointScheduled = new AtomicBoolean(false);
+    private volatile IOException checkpointFailure;
 
     // this does whatever initialization you would like
     // or leave it empty if there is no code you want to
     // execute at application startup
+    // Reopens the tables already in the data folder: only the schemas are read here, a table and its pages
+    // are read on first use, and the log left by a crash is replayed
     public void init( ) throws IOException {
         metaDataManager = new MetaDataManager();
-        serializationManager = new SerializationManager();
+        serializationManager = new SerializationManager(metaDataManager);
+        checkpointExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "DBAppCheckpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        recover();
     }
 
     // following method creates one table only
@@ -34,7 +67,19 @@ public class DBApp {
     // for data in the column. Key is the name of the column
     public void createTable(String strTableName, String strClusteringKeyColumn, Hashtable<String, String> htblColNameType,
                             Hashtable<String,String> htblColNameMin, Hashtable<String,String> htblColNameMax) throws DBAppException, IOException, ParseException {
-        if (Validation.isTableExists(strTableName))
+        createTable(strTableName, strClusteringKeyColumn, htblColNameType, htblColNameMin, htblColNameMax, Utils.getPageCompression());
+    }
+
+    // Same as createTable but the pages of the table are compressed with strCompression: none, lz (fast),
+    // deflate or deflate:level (level 1 to 9, smaller pages but slower). Pages already written keep their codec
+    public void createTable(String strTableName, String strClusteringKeyColumn, Hashtable<String, String> htblColNameType,
+                            Hashtable<String,String> htblColNameMin, Hashtable<String,String> htblColNameMax,
+                            String strCompression) throws DBAppException, IOException, ParseException {
+        byte pageCodec = PageCodec.getCodec(strCompression);
+        int compressionLevel = PageCodec.getLevel(strCompression, 6);
+        if (pageCodec < 0 || compressionLevel < 0 || (pageCodec != PageCodec.DEFLATE && strCompression.indexOf(':') >= 0))
+            throw new DBSchemaException("Invalid page compression " + strCompression);
+        if (metaDataManager.isTableExists(strTableName))
             throw new DBAlreadyExistsException("Table already exists");
         if (!htblColNameType.containsKey(strClusteringKeyColumn))
             throw new DBSchemaException("Clustering key does not exist");
@@ -45,33 +90,99 @@ public class DBApp {
         if (!Validation.validateMinMax(htblColNameType, htblColNameMin, htblColNameMax))
             throw new DBSchemaException("min, max type do not match schema OR min > max");
 
-        metaDataManager.createTableMetaData(strTableName, strClusteringKeyColumn, htblColNameType, htblColNameMin, htblColNameMax);
+        checkpointLock.readLock().lock();
+        try {
+            // csv file, then table file, then manifest: a crash before the manifest leaves files that are overwritten
+            // by the next createTable of the same name
+            metaDataManager.createTableMetaData(strTableName, strClusteringKeyColumn, htblColNameType, htblColNameMin, htblColNameMax);
 
-        Table table = new Table(strTableName, strClusteringKeyColumn);
+            Table table = new Table(strTableName, strClusteringKeyColumn, pageCodec, compressionLevel);
 
-        serializationManager.serializeTable(table);
+            serializationManager.createTable(table);
+            metaDataManager.addToCatalog(strTableName);
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
     }
 
 
     // following method inserts one row only.
     // htblColNameValue must include a value for the primary key
     public void insertIntoTable(String strTableName, Hashtable<String, Object> htblColNameValue) throws DBAppException, IOException, ParseException {
-        if (!Validation.isTableExists(strTableName))
+        if (!metaDataManager.isTableExists(strTableName))
             throw new DBNotFoundException("Table do not exist");
-        Hashtable<String, Hashtable<String, String>> htblColNameMetaData = metaDataManager.getMetaData(strTableName);
-        if (!htblColNameValue.keySet().equals(htblColNameMetaData.keySet()))
+        TableSchema schema = metaDataManager.getTableSchema(strTableName);
+        if (!schema.hasColumns(htblColNameValue.keySet()))
             throw new DBSchemaException("Column names do not match table schema");
-        if (!Validation.validateSchema(htblColNameValue, htblColNameMetaData))
+        if (!Validation.validateSchema(htblColNameValue, schema))
             throw new DBSchemaException("Columns metadata do not match table schema");
+        if (!Validation.areValidLengths(htblColNameValue))
+            throw new DBSchemaException("String values are longer than " + Utils.getMaximumStringLength() + " characters");
+
+        Vector<Hashtable<String, Object>> rows = new Vector<>();
+        rows.add(htblColNameValue);
+        Tuple tuple = new Tuple(schema, htblColNameValue);
 
+        // inserts into pages with room run concurrently under the read lock, splits need the write lock
         Table table = serializationManager.deserializeTable(strTableName, serializationManager);
+        checkpointLock.readLock().lock();
+        try {
+            boolean isInserted;
+            table.getLock().readLock().lock();
+            try {
+                isInserted = table.insertLatched(tuple, rows);
+                if (isInserted)
+                    serializationManager.serializeTable(table);
+            } finally {
+                table.getLock().readLock().unlock();
+            }
 
-        String clusterKeyName = table.getClusterKeyName();
-        Tuple tuple = new Tuple(clusterKeyName, htblColNameValue);
+            if (!isInserted) {
+                table.getLock().writeLock().lock();
+                try {
+                    serializationManager.log(WriteAheadLog.INSERT, strTableName, rows);
+                    table.insert(tuple);
+                    serializationManager.serializeTable(table);
+                } finally {
+                    table.getLock().writeLock().unlock();
+                }
+            }
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+        checkpointIfNeeded();
+    }
 
-        table.insert(tuple);
 
-        serializationManager.serializeTable(table);
+    // following method inserts many rows at once.
+    // the whole batch is validated against the metadata once, sorted by the clustering key
+    // and merged into the table in one pass, an empty table is bulk loaded into packed pages
+    public void insertIntoTable(String strTableName, List<Hashtable<String, Object>> lstColNameValue) throws DBAppException, IOException, ParseException {
+        if (!metaDataManager.isTableExists(strTableName))
+            throw new DBNotFoundException("Table do not exist");
+        TableSchema schema = metaDataManager.getTableSchema(strTableName);
+        for (Hashtable<String, Object> htblColNameValue : lstColNameValue) {
+            if (!schema.hasColumns(htblColNameValue.keySet()))
+                throw new DBSchemaException("Column names do not match table schema");
+            if (!Validation.validateSchema(htblColNameValue, schema))
+                throw new DBSchemaException("Columns metadata do not match table schema");
+            if (!Validation.areValidLengths(htblColNameValue))
+                throw new DBSchemaException("String values are longer than " + Utils.getMaximumStringLength() + " characters");
+        }
+
+        Vector<Tuple> tuples = new Vector<>(lstColNameValue.size());
+        for (Hashtable<String, Object> htblColNameValue : lstColNameValue)
+            tuples.add(new Tuple(schema, htblColNameValue));
+
+        Table table = lockTable(strTableName);
+        try {
+            serializationManager.log(WriteAheadLog.INSERT_BATCH, strTableName, new Vector<>(lstColNameValue));
+            table.insertBatch(tuples);
+            serializationManager.serializeTable(table);
+        } finally {
+            unlockTable(table);
+        }
+        checkpointIfNeeded();
     }
 
 
@@ -80,66 +191,240 @@ public class DBApp {
     // htblColNameValue will not include clustering key as column name
     // strClusteringKeyValue is the value to look for to find the row to update.
     public void updateTable(String strTableName, String strClusteringKeyValue,
-                            Hashtable<String, Object> htblColNameValue) throws DBAppException {
-        // Todo: check if the table exists
-        // Todo: validate schema, check for invalid data types using metadata
+                            Hashtable<String, Object> htblColNameValue) throws DBAppException, IOException {
+        TableSchema schema = validateUpdate(strTableName, htblColNameValue);
+        Comparable clusterKeyValue = parseClusteringKeyValue(schema, strClusteringKeyValue);
 
-        // Todo: Cast strClusteringKeyValue to the correct type based on metadata
+        Vector<Hashtable<String, Object>> rows = new Vector<>();
+        rows.add(getUpdateRow(schema, clusterKeyValue, htblColNameValue));
+
+        // only the page of the tuple is latched and changed, updates of other pages and inserts run concurrently
+        Table table = serializationManager.deserializeTable(strTableName, serializationManager);
+        checkpointLock.readLock().lock();
+        try {
+            table.getLock().readLock().lock();
+            try {
+                table.update(clusterKeyValue, htblColNameValue, rows);
+                serializationManager.serializeTable(table);
+            } finally {
+                table.getLock().readLock().unlock();
+            }
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+        checkpointIfNeeded();
+    }
 
 
+    // following method updates many rows at once.
+    // htblKeyColNameValue maps the clustering key value of each row, written as in updateTable,
+    // to its new column values. Rows in the same page are updated together so the page is written once
+    public void updateTable(String strTableName, Hashtable<String, Hashtable<String, Object>> htblKeyColNameValue) throws DBAppException, IOException {
+        TableSchema schema = null;
+        TreeMap<Comparable, Hashtable<String, Object>> updates = new TreeMap<>();
+        Vector<Hashtable<String, Object>> rows = new Vector<>();
+        for (String strClusteringKeyValue : htblKeyColNameValue.keySet()) {
+            Hashtable<String, Object> htblColNameValue = htblKeyColNameValue.get(strClusteringKeyValue);
+            schema = validateUpdate(strTableName, htblColNameValue);
+            Comparable clusterKeyValue = parseClusteringKeyValue(schema, strClusteringKeyValue);
+            if (updates.put(clusterKeyValue, htblColNameValue) != null)
+                throw new DBDuplicateException("Duplicate clusterKey " + clusterKeyValue + " in batch");
+            rows.add(getUpdateRow(schema, clusterKeyValue, htblColNameValue));
+        }
+        if (updates.isEmpty())
+            return;
+
+        Table table = lockTable(strTableName);
+        try {
+            serializationManager.log(WriteAheadLog.UPDATE_BATCH, strTableName, rows);
+            table.updateBatch(updates);
+            serializationManager.serializeTable(table);
+        } finally {
+            unlockTable(table);
+        }
+        checkpointIfNeeded();
     }
 
 
     // following method could be used to delete one or more rows.
     // htblColNameValue holds the key and value. This will be used in search
-    // to identify which rows/tuples to delete.S
-    // htblColNameValue enteries are ANDED together
-    public void deleteFromTable(String strTableName, Hashtable<String, Object> htblColNameValue) throws DBAppException {
+    // to identify which rows/tuples to delete.
+    // htblColNameValue enteries are ANDED together, it may hold any subset of the columns
+    public void deleteFromTable(String strTableName, Hashtable<String, Object> htblColNameValue) throws DBAppException, IOException {
         // check if table exists
-        if (!Validation.isTableExists(strTableName))
+        if (!metaDataManager.isTableExists(strTableName))
             throw new DBNotFoundException("Table does not exist");
-    
-        // get metadataS
-        Hashtable<String, Hashtable<String, String>> htblColNameMetaData = metaDataManager.getMetaData(strTableName);
-    
+
+        // get metadata
+        TableSchema schema = metaDataManager.getTableSchema(strTableName);
+
         // validate columns in htblColNameValue
-        if (!htblColNameValue.keySet().equals(htblColNameMetaData.keySet()))
-            throw new DBSchemaException("Column names do not match table schema");
-    
+        for (String colName : htblColNameValue.keySet())
+            if (!schema.hasColumn(colName))
+                throw new DBSchemaException("Column names do not match table schema");
+
         // validate data types and values in htblColNameValue
-        if (!Validation.validateSchema(htblColNameValue, htblColNameMetaData))
+        if (!Validation.validateSchema(htblColNameValue, schema))
             throw new DBSchemaException("Columns metadata do not match table schema");
-    
-        // get index for clustering key column
-        String clusteringKey = metaDataManager.getClusteringKey(strTableName);
-        int index = getIndex(strTableName, clusteringKey);
-    
-        // loop over pages using index and compare values
-        PageIterator pageIterator = new PageIterator(strTableName, serializationManager);
-        while (pageIterator.hasNext()) {
-            Page page = pageIterator.next();
-    
-            // check if page's clustering key range overlaps with htblColNameValue range
-            if (clusteringKeyInRange(page.getMinClusterKeyValue(), htblColNameValue, page.getMaxClusterKeyValue())) {
-    
-                // loop over tuples in page and compare with htblColNameValue
-                for (Tuple tuple : page.getTuples()) {
-                    if (tupleMatchesCriteria(tuple, htblColNameValue)) {
-                        page.delete(tuple);
-                    }
-                }
-            }
+
+        Vector<Hashtable<String, Object>> conditions = new Vector<>();
+        conditions.add(htblColNameValue);
+
+        // the table uses the clustering key or an index if possible, otherwise it scans all pages
+        Table table = lockTable(strTableName);
+        try {
+            serializationManager.log(WriteAheadLog.DELETE, strTableName, conditions);
+            table.delete(htblColNameValue);
+            serializationManager.serializeTable(table);
+        } finally {
+            unlockTable(table);
+        }
+        checkpointIfNeeded();
+    }
+
+
+    // following method deletes the rows whose clustering key is between objMinClusteringKey and
+    // objMaxClusteringKey, both inclusive, a null bound leaves that side of the range open.
+    // Pages entirely inside the range are dropped without being read when the table has no index
+    public void deleteRangeFromTable(String strTableName, Object objMinClusteringKey, Object objMaxClusteringKey) throws DBAppException, IOException {
+        if (!metaDataManager.isTableExists(strTableName))
+            throw new DBNotFoundException("Table does not exist");
+        TableSchema schema = metaDataManager.getTableSchema(strTableName);
+        if ((objMinClusteringKey != null && !Validation.isValidType(objMinClusteringKey, schema.getClusterKeyType()))
+                || (objMaxClusteringKey != null && !Validation.isValidType(objMaxClusteringKey, schema.getClusterKeyType())))
+            throw new DBSchemaException("Range bounds do not match the clustering key type");
+        if (objMinClusteringKey != null && objMaxClusteringKey != null && ((Comparable) objMinClusteringKey).compareTo(objMaxClusteringKey) > 0)
+            return;
+
+        Vector<Hashtable<String, Object>> bounds = new Vector<>();
+        bounds.add(new Hashtable<>());
+        bounds.add(new Hashtable<>());
+        if (objMinClusteringKey != null)
+            bounds.get(0).put(schema.getClusterKeyName(), objMinClusteringKey);
+        if (objMaxClusteringKey != null)
+            bounds.get(1).put(schema.getClusterKeyName(), objMaxClusteringKey);
+
+        Table table = lockTable(strTableName);
+        try {
+            serializationManager.log(WriteAheadLog.DELETE_RANGE, strTableName, bounds);
+            table.deleteRange((Comparable) objMinClusteringKey, (Comparable) objMaxClusteringKey);
+            serializationManager.serializeTable(table);
+        } finally {
+            unlockTable(table);
+        }
+        checkpointIfNeeded();
+    }
+
+
+    // following method creates a B+ tree index on one non clustering column
+    // the index is built from the rows already in the table and kept up to date by
+    // inserts and deletes
+    public void createIndex(String strTableName, String strColName, String strIndexName) throws DBAppException, IOException {
+        if (!metaDataManager.isTableExists(strTableName))
+            throw new DBNotFoundException("Table does not exist");
+        TableSchema schema = metaDataManager.getTableSchema(strTableName);
+        if (!schema.hasColumn(strColName))
+            throw new DBSchemaException("Column does not exist");
+        if (strColName.equals(schema.getClusterKeyName()))
+            throw new DBSchemaException("Clustering key can not be indexed");
+
+        Table table = lockTable(strTableName);
+        try {
+            schema = metaDataManager.getTableSchema(strTableName); // checked again once no other index can be added
+            for (int i = 0; i < schema.getColumnsCount(); i++)
+                if (schema.getIndexName(i).equals(strIndexName))
+                    throw new DBAlreadyExistsException("Index already exists");
+
+            metaDataManager.addIndex(strTableName, new String[]{strColName}, strIndexName, BPlusTree.INDEX_TYPE);
+
+            BPlusTree index = new BPlusTree(strIndexName, strColName, Utils.getBPlusTreeOrder());
+            table.buildIndex(index);
+        } finally {
+            unlockTable(table);
+        }
+        checkpoint(); // the metadata is already on disk, so is the index
+    }
+
+
+    // following method creates an Octree index on three columns
+    // the space is partitioned using the Min and Max of the columns in the metadata
+    public void createIndex(String strTableName, String[] strarrColName) throws DBAppException, IOException {
+        if (!metaDataManager.isTableExists(strTableName))
+            throw new DBNotFoundException("Table does not exist");
+        if (strarrColName.length != 3)
+            throw new DBSchemaException("Octree index needs exactly 3 columns");
+        if (new HashSet<>(Arrays.asList(strarrColName)).size() != 3)
+            throw new DBSchemaException("Octree index columns must be different");
+
+        TableSchema schema = metaDataManager.getTableSchema(strTableName);
+        Comparable[] mins = new Comparable[3];
+        Comparable[] maxs = new Comparable[3];
+        for (int i = 0; i < 3; i++) {
+            int colIndex = schema.getColumnIndex(strarrColName[i]);
+            if (colIndex == -1)
+                throw new DBSchemaException("Column does not exist");
+            mins[i] = schema.getMin(colIndex);
+            maxs[i] = schema.getMax(colIndex);
+        }
+
+        String strIndexName = strarrColName[0] + strarrColName[1] + strarrColName[2] + "Index";
+
+        Table table = lockTable(strTableName);
+        try {
+            metaDataManager.addIndex(strTableName, strarrColName, strIndexName, Octree.INDEX_TYPE);
+
+            Octree index = new Octree(strIndexName, strarrColName, mins, maxs, Utils.getOctreeNodeCapacity());
+            table.buildIndex(index);
+        } finally {
+            unlockTable(table);
         }
-    
-        // serialize updated table and metadata to disk
-        serializationManager.serializeTable(this);
-        metaDataManager.saveMetaData(strTableName, htblColNameMetaData);
+        checkpoint(); // the metadata is already on disk, so is the index
     }
-    
 
 
-    public Iterator selectFromTable(SQLTerm[] arrSQLTerms, String[] strarrOperators) throws DBAppException {
-        return null;
+    // following method selects the rows matching the terms
+    // arrSQLTerms are joined using strarrOperators (AND, OR, XOR), AND binds tighter than XOR and XOR tighter than OR.
+    // the planner reads only the pages found using the clustering key or indexes, and scans all pages otherwise
+    public Iterator selectFromTable(SQLTerm[] arrSQLTerms, String[] strarrOperators) throws DBAppException, IOException {
+        if (arrSQLTerms == null || arrSQLTerms.length == 0)
+            throw new DBQueryException("No terms given");
+        if (strarrOperators == null || strarrOperators.length != arrSQLTerms.length - 1)
+            throw new DBQueryException("Number of operators does not match number of terms");
+
+        String strTableName = arrSQLTerms[0].getTableName();
+        if (!metaDataManager.isTableExists(strTableName))
+            throw new DBNotFoundException("Table does not exist");
+        TableSchema schema = metaDataManager.getTableSchema(strTableName);
+
+        List<String> operators = Arrays.asList(TermPredicate.OPERATORS);
+        for (SQLTerm sqlTerm : arrSQLTerms) {
+            if (!strTableName.equals(sqlTerm.getTableName()))
+                throw new DBQueryException("All terms must be on the same table");
+            if (!schema.hasColumn(sqlTerm.getColumnName()))
+                throw new DBSchemaException("Column " + sqlTerm.getColumnName() + " does not exist");
+            if (!operators.contains(sqlTerm.getOperator()))
+                throw new DBQueryException("Invalid operator " + sqlTerm.getOperator());
+            if (!Validation.isValidType(sqlTerm.getValue(), schema.getColumnType(sqlTerm.getColumnName())))
+                throw new DBQueryException("Value type does not match column " + sqlTerm.getColumnName());
+        }
+        for (String strOperator : strarrOperators)
+            if (!strOperator.equalsIgnoreCase(LogicalPredicate.AND) && !strOperator.equalsIgnoreCase(LogicalPredicate.OR)
+                    && !strOperator.equalsIgnoreCase(LogicalPredicate.XOR))
+                throw new DBQueryException("Invalid operator " + strOperator);
+
+        Predicate predicate = Predicate.build(arrSQLTerms, strarrOperators);
+
+        // the pages to read are found under the read lock, the iterator takes it again for every page it reads
+        Table table = serializationManager.deserializeTable(strTableName, serializationManager);
+        table.getLock().readLock().lock();
+        try {
+            QueryPlanner planner = new QueryPlanner(table, schema, serializationManager.getIndexes(strTableName));
+            TreeSet<Integer> positions = planner.getPagePositions(predicate);
+
+            return table.select(predicate, positions);
+        } finally {
+            table.getLock().readLock().unlock();
+        }
     }
 
 
@@ -149,6 +434,144 @@ public class DBApp {
         return page;
     }
 
+    // Counters of the table since the application started, the same object is registered over JMX
+    // as DBApp:type=TableMetrics,table=<strTableName>
+    public DBAppMetricsMXBean getMetrics(String strTableName) throws DBNotFoundException {
+        if (!metaDataManager.isTableExists(strTableName))
+            throw new DBNotFoundException("Table does not exist");
+
+        return DBAppMetrics.forTable(strTableName);
+    }
+
+    // Writes all pages held in the buffer pool to disk, should be called before the application exits
+    public void flush() throws IOException {
+        checkpoint();
+    }
+
+
+    // Helper methods
+    // Schedules a checkpoint on the checkpoint thread once the log or the dirty pages grew too much
+    private void checkpointIfNeeded() throws IOException {
+        IOException failure = checkpointFailure;
+        if (failure != null) {
+            checkpointFailure = null;
+            throw new IOException("Checkpoint failed", failure);
+        }
+
+        if (serializationManager.needsCheckpoint() && isCheckpointScheduled.compareAndSet(false, true))
+            checkpointExecutor.execute(() -> {
+                try {
+                    checkpoint();
+                } catch (IOException e) {
+                    checkpointFailure = e;
+                } finally {
+                    isCheckpointScheduled.set(false);
+                }
+            });
+    }
+
+    // Waits for the operations changing tables to finish and for the checkpoint already running if any.
+    // New operations only wait while the dirty pages are encoded, not while they are written
+    private void checkpoint() throws IOException {
+        serializationManager.checkpoint(checkpointLock.writeLock());
+    }
+
+    // Locks a table for an operation changing it, must be released with unlockTable
+    private Table lockTable(String strTableName) throws IOException, DBNotFoundException {
+        Table table = serializationManager.deserializeTable(strTableName, serializationManager);
+        checkpointLock.readLock().lock();
+        table.getLock().writeLock().lock();
+        return table;
+    }
+
+    private void unlockTable(Table table) {
+        table.getLock().writeLock().unlock();
+        checkpointLock.readLock().unlock();
+    }
+
+    private TableSchema validateUpdate(String strTableName, Hashtable<String, Object> htblColNameValue) throws DBAppException, IOException {
+        if (!metaDataManager.isTableExists(strTableName))
+            throw new DBNotFoundException("Table does not exist");
+        TableSchema schema = metaDataManager.getTableSchema(strTableName);
+        if (htblColNameValue.containsKey(schema.getClusterKeyName()))
+            throw new DBSchemaException("Clustering key can not be updated");
+        for (String colName : htblColNameValue.keySet())
+            if (!schema.hasColumn(colName))
+                throw new DBSchemaException("Column names do not match table schema");
+        if (!Validation.validateSchema(htblColNameValue, schema))
+            throw new DBSchemaException("Columns metadata do not match table schema");
+        if (!Validation.areValidLengths(htblColNameValue))
+            throw new DBSchemaException("String values are longer than " + Utils.getMaximumStringLength() + " characters");
+        return schema;
+    }
+
+    // Parses the clustering key value to the type of the clustering key in the metadata
+    private Comparable parseClusteringKeyValue(TableSchema schema, String strClusteringKeyValue) throws DBSchemaException {
+        try {
+            Comparable clusterKeyValue = Validation.getComparable(strClusteringKeyValue, schema.getClusterKeyType());
+            if (clusterKeyValue == null)
+                throw new DBSchemaException("Invalid clustering key value " + strClusteringKeyValue);
+            return clusterKeyValue;
+        } catch (ParseException | NumberFormatException e) {
+            throw new DBSchemaException("Invalid clustering key value " + strClusteringKeyValue);
+        }
+    }
+
+    // Logged row of an update: the new values and the clustering key
+    private Hashtable<String, Object> getUpdateRow(TableSchema schema, Comparable clusterKeyValue, Hashtable<String, Object> htblColNameValue) {
+        Hashtable<String, Object> row = new Hashtable<>(htblColNameValue);
+        row.put(schema.getClusterKeyName(), clusterKeyValue);
+        return row;
+    }
+
+    // Redoes the operations logged since the last checkpoint. An operation is logged after it is validated
+    // but before it is done, so an operation that failed the first time fails again and is skipped.
+    private void recover() throws IOException {
+        Vector<WriteAheadLog.LogRecord> records = serializationManager.recover();
+        for (WriteAheadLog.LogRecord record : records) {
+            try {
+                Table table = serializationManager.deserializeTable(record.getTableName(), serializationManager);
+                TableSchema schema = metaDataManager.getTableSchema(record.getTableName());
+                switch (record.getType()) {
+                    case WriteAheadLog.INSERT:
+                        table.insert(new Tuple(schema, record.getRows().get(0)));
+                        break;
+                    case WriteAheadLog.INSERT_BATCH:
+                        Vector<Tuple> tuples = new Vector<>();
+                        for (Hashtable<String, Object> row : record.getRows())
+                            tuples.add(new Tuple(schema, row));
+                        table.insertBatch(tuples);
+                        break;
+                    case WriteAheadLog.DELETE:
+                        table.delete(record.getRows().get(0));
+                        break;
+                    case WriteAheadLog.DELETE_RANGE:
+                        table.deleteRange((Comparable) record.getRows().get(0).get(schema.getClusterKeyName()),
+                                (Comparable) record.getRows().get(1).get(schema.getClusterKeyName()));
+                        break;
+                    case WriteAheadLog.UPDATE:
+                        Hashtable<String, Object> row = new Hashtable<>(record.getRows().get(0));
+                        table.update((Comparable) row.remove(schema.getClusterKeyName()), row, null);
+                        break;
+                    case WriteAheadLog.UPDATE_BATCH:
+                        TreeMap<Comparable, Hashtable<String, Object>> updates = new TreeMap<>();
+                        for (Hashtable<String, Object> updateRow : record.getRows()) {
+                            Hashtable<String, Object> htblColNameValue = new Hashtable<>(updateRow);
+                            updates.put((Comparable) htblColNameValue.remove(schema.getClusterKeyName()), htblColNameValue);
+                        }
+                        table.updateBatch(updates);
+                        break;
+                }
+                serializationManager.serializeTable(table);
+            } catch (DBAppException e) {
+                // the operation failed when it was first done too
+            }
+        }
+
+        if (!records.isEmpty())
+            serializationManager.checkpoint();
+    }
+
 
 
     public static void main(String[] args) throws Exception {
@@ -181,6 +604,7 @@ public class DBApp {
         try {
             dbApp.createTable(strTableName, strClusteringKeyColumn, htblColNameType, htblColNameMin, htblColNameMax);
             dbApp.insertIntoTable(strTableName , htblColNameValue );
+            dbApp.flush();
         } catch (Exception e) {
             e.printStackTrace();
         }
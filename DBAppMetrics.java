@@ -0,0 +1,230 @@
+package Utils;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Metrics of one table, created and registered over JMX the first time the table records something.
+// Recording only increments LongAdders so it does not allocate and threads do not contend on one counter.
+public class DBAppMetrics implements DBAppMetricsMXBean {
+    private static final ConcurrentHashMap<String, DBAppMetrics> htblMetrics = new ConcurrentHashMap<>(); // table name -> metrics
+
+    private final String tableName;
+    private final LatencyHistogram pageReadLatency;
+    private final LatencyHistogram pageWriteLatency;
+    private final LongAdder bytesRead;
+    private final LongAdder bytesWritten;
+    private final LongAdder bytesDeserialized;
+    private final LongAdder bytesSerialized;
+    private final LongAdder tuplesShifted;
+    private final LongAdder pageSplits;
+    private final LongAdder metaDataLoads;
+    private final LongAdder metaDataWrites;
+    private final LongAdder queries;
+    private final LongAdder pagesScanned;
+    private final LongAdder pagesSkipped;
+    private final LongAdder bufferPoolHits;
+    private final LongAdder bufferPoolMisses;
+
+    private DBAppMetrics(String tableName) {
+        this.tableName = tableName;
+        this.pageReadLatency = new LatencyHistogram();
+        this.pageWriteLatency = new LatencyHistogram();
+        this.bytesRead = new LongAdder();
+        this.bytesWritten = new LongAdder();
+        this.bytesDeserialized = new LongAdder();
+        this.bytesSerialized = new LongAdder();
+        this.tuplesShifted = new LongAdder();
+        this.pageSplits = new LongAdder();
+        this.metaDataLoads = new LongAdder();
+        this.metaDataWrites = new LongAdder();
+        this.queries = new LongAdder();
+        this.pagesScanned = new LongAdder();
+        this.pagesSkipped = new LongAdder();
+        this.bufferPoolHits = new LongAdder();
+        this.bufferPoolMisses = new LongAdder();
+    }
+
+    public static DBAppMetrics forTable(String tableName) {
+        DBAppMetrics metrics = htblMetrics.get(tableName);
+        if (metrics != null)
+            return metrics;
+
+        return htblMetrics.computeIfAbsent(tableName, k -> register(new DBAppMetrics(k)));
+    }
+
+
+    // Recording
+    public void recordPageRead(long nanos, int storedBytes, int decodedBytes) {
+        pageReadLatency.record(nanos);
+        bytesRead.add(storedBytes);
+        bytesDeserialized.add(decodedBytes);
+    }
+
+    public void recordPageWrite(long nanos, int encodedBytes, int storedBytes) {
+        pageWriteLatency.record(nanos);
+        bytesSerialized.add(encodedBytes);
+        bytesWritten.add(storedBytes);
+    }
+
+    public void recordTableRead(int bytes) {
+        bytesRead.add(bytes);
+        bytesDeserialized.add(bytes);
+    }
+
+    public void recordTableWrite(int bytes) {
+        bytesSerialized.add(bytes);
+        bytesWritten.add(bytes);
+    }
+
+    public void recordTuplesShifted(int count) {
+        tuplesShifted.add(count);
+    }
+
+    public void recordPageSplit() {
+        pageSplits.increment();
+    }
+
+    public void recordMetaDataLoad() {
+        metaDataLoads.increment();
+    }
+
+    public void recordMetaDataWrite() {
+        metaDataWrites.increment();
+    }
+
+    public void recordQuery(int pagesSkippedCount) {
+        queries.increment();
+        pagesSkipped.add(pagesSkippedCount);
+    }
+
+    public void recordPagesScanned(int count) {
+        pagesScanned.add(count);
+    }
+
+    public void recordBufferPoolAccess(boolean isHit) {
+        if (isHit)
+            bufferPoolHits.increment();
+        else
+            bufferPoolMisses.increment();
+    }
+
+
+    // DBAppMetricsMXBean
+    public String getTableName() {
+        return tableName;
+    }
+
+    public long getPageReads() {
+        return pageReadLatency.getCount();
+    }
+
+    public long getPageWrites() {
+        return pageWriteLatency.getCount();
+    }
+
+    public long[] getPageReadLatencyMicros() {
+        return pageReadLatency.getCounts();
+    }
+
+    public long[] getPageWriteLatencyMicros() {
+        return pageWriteLatency.getCounts();
+    }
+
+    public long[] getLatencyBucketUpperBoundsMicros() {
+        long[] bounds = new long[LatencyHistogram.BUCKETS_COUNT];
+        for (int i = 0; i < bounds.length; i++)
+            bounds[i] = LatencyHistogram.getUpperBoundMicros(i);
+        return bounds;
+    }
+
+    public double getPageReadMeanMicros() {
+        return pageReadLatency.getMeanMicros();
+    }
+
+    public long getPageReadP99Micros() {
+        return pageReadLatency.getPercentileMicros(99);
+    }
+
+    public double getPageWriteMeanMicros() {
+        return pageWriteLatency.getMeanMicros();
+    }
+
+    public long getPageWriteP99Micros() {
+        return pageWriteLatency.getPercentileMicros(99);
+    }
+
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    public long getBytesDeserialized() {
+        return bytesDeserialized.sum();
+    }
+
+    public long getBytesSerialized() {
+        return bytesSerialized.sum();
+    }
+
+    public long getTuplesShifted() {
+        return tuplesShifted.sum();
+    }
+
+    public long getPageSplits() {
+        return pageSplits.sum();
+    }
+
+    public long getMetaDataLoads() {
+        return metaDataLoads.sum();
+    }
+
+    public long getMetaDataWrites() {
+        return metaDataWrites.sum();
+    }
+
+    public long getQueries() {
+        return queries.sum();
+    }
+
+    public long getPagesScanned() {
+        return pagesScanned.sum();
+    }
+
+    public long getPagesSkipped() {
+        return pagesSkipped.sum();
+    }
+
+    public long getBufferPoolHits() {
+        return bufferPoolHits.sum();
+    }
+
+    public long getBufferPoolMisses() {
+        return bufferPoolMisses.sum();
+    }
+
+    public double getBufferPoolHitRate() {
+        long hits = bufferPoolHits.sum();
+        long accesses = hits + bufferPoolMisses.sum();
+        return accesses == 0 ? 0 : (double) hits / accesses;
+    }
+
+
+    // Helper methods
+    // The metrics stay readable through DBApp.getMetrics if they can not be registered
+    private static DBAppMetrics register(DBAppMetrics metrics) {
+        try {
+            ObjectName name = new ObjectName("DBApp:type=TableMetrics,table=" + ObjectName.quote(metrics.tableName));
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name))
+                ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, name);
+        } catch (JMException e) {
+            // not registered
+        }
+        return metrics;
+    }
+}
@@ -0,0 +1,59 @@
+package Utils;
+
+// Counters of one table, registered over JMX as DBApp:type=TableMetrics,table=<tableName>.
+// Counts are totals since the application started, latencies are histograms in microseconds
+// whose bucket bounds are given by getLatencyBucketUpperBoundsMicros.
+public interface DBAppMetricsMXBean {
+    String getTableName();
+
+    // Pages read from and written to the page segment, a page written by a checkpoint counts once
+    long getPageReads();
+
+    long getPageWrites();
+
+    long[] getPageReadLatencyMicros();
+
+    long[] getPageWriteLatencyMicros();
+
+    long[] getLatencyBucketUpperBoundsMicros();
+
+    double getPageReadMeanMicros();
+
+    long getPageReadP99Micros();
+
+    double getPageWriteMeanMicros();
+
+    long getPageWriteP99Micros();
+
+    // Bytes stored on disk, after compression
+    long getBytesRead();
+
+    long getBytesWritten();
+
+    // Bytes of encoded pages and table files, before compression
+    long getBytesDeserialized();
+
+    long getBytesSerialized();
+
+    // Tuples moved to a neighbour page by inserts, and pages split
+    long getTuplesShifted();
+
+    long getPageSplits();
+
+    long getMetaDataLoads();
+
+    long getMetaDataWrites();
+
+    // Selects, pages they read and pages skipped using the clustering key, indexes and zone maps
+    long getQueries();
+
+    long getPagesScanned();
+
+    long getPagesSkipped();
+
+    long getBufferPoolHits();
+
+    long getBufferPoolMisses();
+
+    double getBufferPoolHitRate();
+}
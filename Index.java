@@ -0,0 +1,26 @@
+package index;
+
+import model.Tuple;
+
+import java.util.Vector;
+
+// Secondary index on one or more non clustering columns of a table.
+// Every entry points to the page holding the tuple and to the tuple clusterKey, so the table
+// has to keep the index up to date whenever a tuple is inserted, deleted or moved to another page.
+// Implementations are synchronized, inserts into different pages of a table update the index concurrently.
+public interface Index {
+    String getIndexName();
+
+    String getIndexType();
+
+    String[] getColumnNames();
+
+    void insert(Tuple tuple, int pageIndex);
+
+    void delete(Tuple tuple);
+
+    void updatePageIndex(Tuple tuple, int pageIndex);
+
+    // Adds every entry to entries and its column values, in the order of getColumnNames, to values
+    void getEntries(Vector<Comparable[]> values, Vector<IndexEntry> entries);
+}
@@ -0,0 +1,24 @@
+package index;
+
+// Points to a tuple, pageIndex is the page file index (not the position of the page in the table)
+public class IndexEntry {
+    private int pageIndex;
+    private final Object clusterKeyValue;
+
+    public IndexEntry(int pageIndex, Object clusterKeyValue) {
+        this.pageIndex = pageIndex;
+        this.clusterKeyValue = clusterKeyValue;
+    }
+
+    public int getPageIndex() {
+        return pageIndex;
+    }
+
+    public void setPageIndex(int pageIndex) {
+        this.pageIndex = pageIndex;
+    }
+
+    public Object getClusterKeyValue() {
+        return clusterKeyValue;
+    }
+}
@@ -0,0 +1,69 @@
+package Utils;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Histogram of latencies with fixed buckets, bucket i counts the latencies below 2^i microseconds (and at least
+// 2^(i-1) microseconds) and the last bucket counts all longer latencies. Recording only increments counters.
+public class LatencyHistogram {
+    public static final int BUCKETS_COUNT = 24; // the last bounded bucket is about 4 seconds
+
+    private final LongAdder[] buckets;
+    private final LongAdder totalNanos;
+
+    public LatencyHistogram() {
+        this.buckets = new LongAdder[BUCKETS_COUNT];
+        for (int i = 0; i < BUCKETS_COUNT; i++)
+            buckets[i] = new LongAdder();
+        this.totalNanos = new LongAdder();
+    }
+
+
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos) / 1000;
+        int bucket = micros == 0 ? 0 : 64 - Long.numberOfLeadingZeros(micros);
+        buckets[Math.min(bucket, BUCKETS_COUNT - 1)].increment();
+        totalNanos.add(nanos);
+    }
+
+    public long[] getCounts() {
+        long[] counts = new long[BUCKETS_COUNT];
+        for (int i = 0; i < BUCKETS_COUNT; i++)
+            counts[i] = buckets[i].sum();
+        return counts;
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets)
+            count += bucket.sum();
+        return count;
+    }
+
+    public double getMeanMicros() {
+        long count = getCount();
+        return count == 0 ? 0 : totalNanos.sum() / 1000.0 / count;
+    }
+
+    // Upper bound of the bucket holding the given percentile (0 to 100), Long.MAX_VALUE if it is the last bucket
+    public long getPercentileMicros(double percentile) {
+        long[] counts = getCounts();
+        long count = 0;
+        for (long bucketCount : counts)
+            count += bucketCount;
+        if (count == 0)
+            return 0;
+
+        long rank = (long) Math.ceil(count * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= Math.max(1, rank))
+                return getUpperBoundMicros(i);
+        }
+        return Long.MAX_VALUE;
+    }
+
+    public static long getUpperBoundMicros(int bucket) {
+        return bucket == BUCKETS_COUNT - 1 ? Long.MAX_VALUE : 1L << bucket;
+    }
+}
@@ -0,0 +1,60 @@
+package query;
+
+import model.Tuple;
+
+import java.util.Vector;
+
+// Two predicates joined with AND, OR or XOR
+public class LogicalPredicate extends Predicate {
+    public static final String AND = "AND";
+    public static final String OR = "OR";
+    public static final String XOR = "XOR";
+
+    private final String operator;
+    private final Predicate left;
+    private final Predicate right;
+
+    public LogicalPredicate(String operator, Predicate left, Predicate right) {
+        this.operator = operator;
+        this.left = left;
+        this.right = right;
+    }
+
+    public boolean evaluate(Tuple tuple) {
+        switch (operator) {
+            case AND:
+                return left.evaluate(tuple) && right.evaluate(tuple);
+            case OR:
+                return left.evaluate(tuple) || right.evaluate(tuple);
+            default:
+                return left.evaluate(tuple) ^ right.evaluate(tuple);
+        }
+    }
+
+    // returns the operands of a chain of the same operator, Example: a AND b AND c returns a, b, c
+    public Vector<Predicate> getOperands() {
+        Vector<Predicate> operands = new Vector<>();
+        collectOperands(this, operands);
+        return operands;
+    }
+
+    private void collectOperands(Predicate predicate, Vector<Predicate> operands) {
+        if (predicate instanceof LogicalPredicate && ((LogicalPredicate) predicate).operator.equals(operator)) {
+            collectOperands(((LogicalPredicate) predicate).left, operands);
+            collectOperands(((LogicalPredicate) predicate).right, operands);
+        } else
+            operands.add(predicate);
+    }
+
+    public String getOperator() {
+        return operator;
+    }
+
+    public Predicate getLeft() {
+        return left;
+    }
+
+    public Predicate getRight() {
+        return right;
+    }
+}
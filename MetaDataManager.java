@@ -5,94 +5,281 @@ import exceptions.DBAppException;
 import exceptions.DBDuplicateException;
 import exceptions.DBNotFoundException;
 import Utils.Utils;
+import model.TableSchema;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
+import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
+// Keeps the schema of every table in memory, the csv files of the tables listed in the manifest are only read at startup
+// and written whenever a schema changes (write-through)
+// Schemas are never modified, a change replaces the schema of the table, so they are read without locking
+// and only changes are synchronized
 public class MetaDataManager {
-    private static final String META_DATA_FOLDER = "src/main/resources/metadata/";
+    private static final String META_DATA_HEADER = "TableName,ColumnName,ColumnType,ClusteringKey,IndexName,IndexType,Min,Max";
+    private static final String MANIFEST_FILE = "catalog.manifest"; // names of the tables, one per line, then the end line
+    private static final String MANIFEST_END = "#end "; // start of the last line of the manifest, followed by the number of tables
+    private final ConcurrentHashMap<String, TableSchema> htblTableSchema; // table name -> schema
+    private final HashSet<String> uncataloguedTables; // tables being created, not in the manifest yet
+    private final String metaDataFolder; // metadata folder inside the data folder
 
 
-    // Delete all metadata files and create a new folder
+    // Reads the schemas of the tables already in the metadata folder, or creates the folder
     public MetaDataManager() throws IOException {
-        File metaFolder = new File(META_DATA_FOLDER);
+        htblTableSchema = new ConcurrentHashMap<>();
+        uncataloguedTables = new HashSet<>();
+        metaDataFolder = Utils.getMetaDataFolderPath();
+        File metaFolder = new File(metaDataFolder);
 
-        if (metaFolder.exists())
-            Utils.deleteFolder(metaFolder);
-
-        if (!metaFolder.mkdirs())
+        if (!metaFolder.exists() && !metaFolder.mkdirs())
             throw new IOException("Failed to create metadata folder");
+
+        loadCatalog();
     }
 
 
-    public void createTableMetaData(String strTableName, String strClusteringKeyColumn, Hashtable<String, String> htblColNameType,
+    // Writes the csv file of a new table, the table is only added to the manifest by addToCatalog once its table file
+    // is written
+    public synchronized void createTableMetaData(String strTableName, String strClusteringKeyColumn, Hashtable<String, String> htblColNameType,
                                     Hashtable<String, String> htblColNameMin, Hashtable<String, String> htblColNameMax) throws DBAppException, IOException {
 
-        String tableMetaDataFile = META_DATA_FOLDER + strTableName + ".csv";
-        if (new File(tableMetaDataFile).exists())
+        // a csv file of a table missing from the manifest was left by a createTable that did not finish, it is overwritten
+        if (htblTableSchema.containsKey(strTableName))
             throw new DBAlreadyExistsException("Table MetaData already exists");
 
-        FileWriter writer = new FileWriter(tableMetaDataFile, true);
-        writer.write("TableName,ColumnName,ColumnType,ClusteringKey,IndexName,IndexType,Min,Max\n");
-
-        // loop on all columns and write their metadata to the file
         int numCols = htblColNameType.size();
-        String[] ColNames = htblColNameType.keySet().toArray(new String[numCols]);
+        String[] colNames = htblColNameType.keySet().toArray(new String[numCols]);
+        String[] colTypes = new String[numCols];
+        String[] colMins = new String[numCols];
+        String[] colMaxs = new String[numCols];
+        String[] indexNames = new String[numCols];
+        String[] indexTypes = new String[numCols];
         for (int i = 0; i < numCols; i++) {
-            String ColNameType = htblColNameType.get(ColNames[i]);
-            String ColNameMin = htblColNameMin.get(ColNames[i]);
-            String ColNameMax = htblColNameMax.get(ColNames[i]);
-
-            writer.write(strTableName + "," + ColNames[i] + "," + ColNameType + "," + (ColNames[i].equals(strClusteringKeyColumn) ? "True" : "False")
-                    + "," + "null" + "," + "null" + "," + ColNameMin + "," + ColNameMax + (i != numCols - 1 ? "\n" : ""));
+            colTypes[i] = htblColNameType.get(colNames[i]);
+            colMins[i] = htblColNameMin.get(colNames[i]);
+            colMaxs[i] = htblColNameMax.get(colNames[i]);
+            indexNames[i] = "null";
+            indexTypes[i] = "null";
         }
-        writer.close();
-        System.out.println("Table MetaData created successfully ar " + tableMetaDataFile);
+
+        TableSchema schema = createTableSchema(strTableName, strClusteringKeyColumn, colNames, colTypes, colMins, colMaxs, indexNames, indexTypes);
+        writeTableMetaData(schema);
+        htblTableSchema.put(strTableName, schema);
+        uncataloguedTables.add(strTableName);
     }
 
+    // Adds a table created by createTableMetaData to the manifest, it is then read at startup
+    public synchronized void addToCatalog(String strTableName) throws IOException {
+        uncataloguedTables.remove(strTableName);
+        writeManifest();
+    }
 
-    // getMetaData
-    // returns hashtable of String key for (column name) and hashtable value
-    // that have all data about column (type, isClusteringKey, indexName, indexType, min, max) and values
-    public Hashtable<String, Hashtable<String, String>> getMetaData(String strTableName)
-                                                                    throws IOException, DBAppException {
 
-        String tableMetaDataFile = META_DATA_FOLDER + strTableName + ".csv";
-        if (!(new File(tableMetaDataFile).exists()))
+    // getTableSchema
+    // returns the schema of the table from memory, columns are in the same order as the metadata file
+    public TableSchema getTableSchema(String strTableName) throws DBNotFoundException {
+        TableSchema schema = htblTableSchema.get(strTableName);
+        if (schema == null)
             throw new DBNotFoundException("Table MetaData does not exist");
 
-        // read the csv file and return the data
-        FileReader fr = new FileReader(tableMetaDataFile);
-        BufferedReader br = new BufferedReader(fr);
-        Hashtable<String, Hashtable<String, String>> htblTableMetaData = new Hashtable<>();
+        return schema;
+    }
+
+    public boolean isTableExists(String strTableName) {
+        return htblTableSchema.containsKey(strTableName);
+    }
+
+    // Sets IndexName and IndexType of the given columns, the csv file is rewritten
+    public synchronized void addIndex(String strTableName, String[] strarrColName, String indexName, String indexType) throws DBAppException, IOException {
+        TableSchema schema = getTableSchema(strTableName);
+
+        int numCols = schema.getColumnsCount();
+        String[] colNames = new String[numCols];
+        String[] colTypes = new String[numCols];
+        String[] colMins = new String[numCols];
+        String[] colMaxs = new String[numCols];
+        String[] indexNames = new String[numCols];
+        String[] indexTypes = new String[numCols];
+        for (int i = 0; i < numCols; i++) {
+            colNames[i] = schema.getColumnName(i);
+            colTypes[i] = schema.getColumnType(i);
+            colMins[i] = schema.getStrMin(i);
+            colMaxs[i] = schema.getStrMax(i);
+            indexNames[i] = schema.getIndexName(i);
+            indexTypes[i] = schema.getIndexType(i);
+        }
+
+        for (String colName : strarrColName) {
+            int colIndex = schema.getColumnIndex(colName);
+            if (colIndex == -1)
+                throw new DBNotFoundException("Column " + colName + " does not exist");
+            if (schema.hasIndex(colIndex))
+                throw new DBAlreadyExistsException("Column " + colName + " already has an index");
 
-        // read the header and then insert into hashtable (key: column name, value: hashtable of column metadata)
-        String[] header = br.readLine().split(",");
-        while (br.ready()) {
-            String[] colMetaData = br.readLine().split(","); // array Column metadata
+            indexNames[colIndex] = indexName;
+            indexTypes[colIndex] = indexType;
+        }
+
+        TableSchema newSchema = createTableSchema(strTableName, schema.getClusterKeyName(), colNames, colTypes, colMins, colMaxs, indexNames, indexTypes);
+        writeTableMetaData(newSchema);
+        htblTableSchema.put(strTableName, newSchema);
+    }
 
-            Hashtable<String, String> htblColMetaData = getHtblColMetaData(header, colMetaData); // hashtable Column metadata
 
-            String colName = colMetaData[1];
-            htblTableMetaData.put(colName, htblColMetaData); // put (Column Name, hashtable Column Metadata)
+    // Helper functions
+    // Reads the csv file of every table in the manifest. The folder is only listed if the manifest is missing
+    // (a new metadata folder, or one written before manifests existed) or corrupt, then the manifest is written
+    private void loadCatalog() throws IOException {
+        Vector<String> tableNames = readManifest();
+        if (tableNames != null) {
+            for (String tableName : tableNames) {
+                TableSchema schema = readTableMetaData(new File(metaDataFolder + tableName + ".csv"));
+                htblTableSchema.put(schema.getTableName(), schema);
+            }
+            return;
         }
+
+        File[] files = new File(metaDataFolder).listFiles();
+        if (files != null)
+            for (File file : files) // a csv file without table file was left by a createTable that did not finish
+                if (file.getName().endsWith(".csv") && new File(Utils.getTableFilePath(file.getName().substring(0, file.getName().length() - 4))).exists()) {
+                    TableSchema schema = readTableMetaData(file);
+                    htblTableSchema.put(schema.getTableName(), schema);
+                }
+        writeManifest();
+    }
+
+    // Names of the tables in the manifest, null if it is missing or corrupt: without its end line, with another
+    // number of tables than its end line says, or naming a table without csv file
+    private Vector<String> readManifest() throws IOException {
+        File manifestFile = new File(metaDataFolder + MANIFEST_FILE);
+        if (!manifestFile.exists())
+            return null;
+
+        Vector<String> lines = new Vector<>();
+        BufferedReader br = new BufferedReader(new FileReader(manifestFile));
+        String line;
+        while ((line = br.readLine()) != null)
+            lines.add(line);
         br.close();
 
-        return htblTableMetaData;
+        if (lines.isEmpty() || !lines.lastElement().startsWith(MANIFEST_END))
+            return null;
+        Vector<String> tableNames = new Vector<>(lines.subList(0, lines.size() - 1));
+        try {
+            if (Integer.parseInt(lines.lastElement().substring(MANIFEST_END.length())) != tableNames.size())
+                return null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        for (String tableName : tableNames)
+            if (!new File(metaDataFolder + tableName + ".csv").exists())
+                return null;
+        return tableNames;
+    }
+
+    private void writeManifest() throws IOException {
+        StringBuilder manifest = new StringBuilder();
+        int tablesCount = 0;
+        for (String tableName : htblTableSchema.keySet())
+            if (!uncataloguedTables.contains(tableName)) {
+                manifest.append(tableName).append("\n");
+                tablesCount++;
+            }
+        manifest.append(MANIFEST_END).append(tablesCount).append("\n");
+        writeFile(metaDataFolder + MANIFEST_FILE, manifest.toString());
     }
 
+    // Writes the file to a temporary file first, waits until it is on disk and renames it, then waits until the
+    // rename is on disk, so a crash leaves either the old or the new file and never an empty or truncated one
+    private void writeFile(String filePath, String content) throws IOException {
+        File tempFile = new File(filePath + ".tmp");
+        FileOutputStream fileOut = new FileOutputStream(tempFile, false);
+        Writer writer = new OutputStreamWriter(fileOut);
+        try {
+            writer.write(content);
+            writer.flush();
+            fileOut.getFD().sync();
+        } finally {
+            writer.close();
+        }
+
+        Files.move(tempFile.toPath(), new File(filePath).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Utils.syncFolder(metaDataFolder);
+    }
+
+    private TableSchema readTableMetaData(File tableMetaDataFile) throws IOException {
+        BufferedReader br = new BufferedReader(new FileReader(tableMetaDataFile));
+        Vector<String[]> rows = new Vector<>();
+
+        br.readLine(); // skip header
+        while (br.ready())
+            rows.add(br.readLine().split(",")); // TableName,ColumnName,ColumnType,ClusteringKey,IndexName,IndexType,Min,Max
+        br.close();
 
-    // Helper function to get the metadata of a column
-    private Hashtable<String, String> getHtblColMetaData(String[] header, String[] colMetaData)
-            throws IOException, DBAppException {
+        int numCols = rows.size();
+        String tableName = rows.get(0)[0];
+        String clusterKeyName = null;
+        String[] colNames = new String[numCols];
+        String[] colTypes = new String[numCols];
+        String[] colMins = new String[numCols];
+        String[] colMaxs = new String[numCols];
+        String[] indexNames = new String[numCols];
+        String[] indexTypes = new String[numCols];
+        for (int i = 0; i < numCols; i++) {
+            String[] colMetaData = rows.get(i);
+            colNames[i] = colMetaData[1];
+            colTypes[i] = colMetaData[2];
+            if (colMetaData[3].equals("True"))
+                clusterKeyName = colMetaData[1];
+            indexNames[i] = colMetaData[4];
+            indexTypes[i] = colMetaData[5];
+            colMins[i] = colMetaData[6];
+            colMaxs[i] = colMetaData[7];
+        }
+
+        DBAppMetrics.forTable(tableName).recordMetaDataLoad();
+        return createTableSchema(tableName, clusterKeyName, colNames, colTypes, colMins, colMaxs, indexNames, indexTypes);
+    }
 
-        Hashtable<String, String> htblColMetaData = new Hashtable<>();
-        for (int i = 0; i < header.length; i++)
-            htblColMetaData.put(header[i], colMetaData[i]); // Example: htblColMetaData.put("ColumnType", Double)
+    // Rewrites the csv file of the table from its schema, see writeFile
+    private void writeTableMetaData(TableSchema schema) throws IOException {
+        StringBuilder metaData = new StringBuilder(META_DATA_HEADER + "\n");
 
-        return htblColMetaData;
+        // loop on all columns and write their metadata to the file
+        int numCols = schema.getColumnsCount();
+        for (int i = 0; i < numCols; i++) {
+            String colName = schema.getColumnName(i);
+            metaData.append(schema.getTableName() + "," + colName + "," + schema.getColumnType(i) + "," + (colName.equals(schema.getClusterKeyName()) ? "True" : "False")
+                    + "," + schema.getIndexName(i) + "," + schema.getIndexType(i) + "," + schema.getStrMin(i) + "," + schema.getStrMax(i) + (i != numCols - 1 ? "\n" : ""));
+        }
+        writeFile(metaDataFolder + schema.getTableName() + ".csv", metaData.toString());
+        DBAppMetrics.forTable(schema.getTableName()).recordMetaDataWrite();
     }
 
+    // Parses min and max of every column to its type
+    private TableSchema createTableSchema(String tableName, String clusterKeyName, String[] colNames, String[] colTypes, String[] colMins,
+                                          String[] colMaxs, String[] indexNames, String[] indexTypes) throws IOException {
+        int numCols = colNames.length;
+        String[] lowerColTypes = new String[numCols];
+        Comparable[] mins = new Comparable[numCols];
+        Comparable[] maxs = new Comparable[numCols];
+        try {
+            for (int i = 0; i < numCols; i++) {
+                lowerColTypes[i] = colTypes[i].toLowerCase();
+                mins[i] = Validation.getComparable(colMins[i], lowerColTypes[i]);
+                maxs[i] = Validation.getComparable(colMaxs[i], lowerColTypes[i]);
+            }
+        } catch (ParseException e) {
+            throw new IOException("Invalid min or max in metadata of table " + tableName);
+        }
 
+        return new TableSchema(tableName, clusterKeyName, colNames, lowerColTypes, colMins, colMaxs, mins, maxs, indexNames, indexTypes);
+    }
 
 }
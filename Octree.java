@@ -0,0 +1,285 @@
+package index;
+
+import model.Tuple;
+
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.Vector;
+
+// Octree on three columns of a table. The space is bounded by the Min and Max of the columns in the metadata
+// and every node splits its space in 8 octants at the middle of each column.
+// A leaf holds up to nodeCapacity distinct points, tuples with the same values of the three columns share one
+// point and are added to its overflow bucket instead of splitting the leaf.
+// Deleting only removes entries, nodes are not merged.
+// Like the B+ tree, the Octree is kept in memory and written to disk as the list of its entries.
+public class Octree implements Index {
+    public static final String INDEX_TYPE = "Octree";
+    private static final int DIMENSIONS = 3;
+    private static final int MAX_DEPTH = 64; // a leaf deeper than this is not split anymore
+
+    private final String indexName;
+    private final String[] colNames;
+    private final int nodeCapacity;
+    private final OctreeNode root;
+
+    public Octree(String indexName, String[] colNames, Comparable[] mins, Comparable[] maxs, int nodeCapacity) {
+        this.indexName = indexName;
+        this.colNames = colNames;
+        this.nodeCapacity = Math.max(1, nodeCapacity);
+        this.root = new OctreeNode(mins.clone(), maxs.clone(), 0);
+    }
+
+
+    public synchronized void insert(Tuple tuple, int pageIndex) {
+        Comparable[] values = getValues(tuple);
+        root.insert(values, new IndexEntry(pageIndex, tuple.getClusterKeyValue()), nodeCapacity);
+    }
+
+    public synchronized void delete(Tuple tuple) {
+        Comparable[] values = getValues(tuple);
+        OctreeNode leaf = root.findLeaf(values);
+
+        Point point = leaf.getPoint(values);
+        if (point == null)
+            return;
+
+        int i = point.indexOfEntry(tuple.getClusterKeyValue());
+        if (i >= 0)
+            point.bucket.remove(i);
+        if (point.bucket.isEmpty())
+            leaf.points.remove(point);
+    }
+
+    public synchronized void updatePageIndex(Tuple tuple, int pageIndex) {
+        Comparable[] values = getValues(tuple);
+        Point point = root.findLeaf(values).getPoint(values);
+        if (point == null)
+            return;
+
+        int i = point.indexOfEntry(tuple.getClusterKeyValue());
+        if (i >= 0)
+            point.bucket.get(i).setPageIndex(pageIndex);
+    }
+
+    // returns entries of all tuples whose values are within the ranges of the three columns,
+    // ranges are given in the order of getColumnNames and a null bound means no bound.
+    // Only octants overlapping all three ranges are visited.
+    public synchronized Vector<IndexEntry> search(Comparable[] mins, boolean[] minInclusive, Comparable[] maxs, boolean[] maxInclusive) {
+        Vector<IndexEntry> result = new Vector<>();
+        root.search(mins, minInclusive, maxs, maxInclusive, result);
+        return result;
+    }
+
+    public synchronized void getEntries(Vector<Comparable[]> values, Vector<IndexEntry> entries) {
+        root.getEntries(values, entries);
+    }
+
+    public String getIndexName() {
+        return indexName;
+    }
+
+    public String getIndexType() {
+        return INDEX_TYPE;
+    }
+
+    public String[] getColumnNames() {
+        return colNames.clone();
+    }
+
+
+    // Helper methods
+    private Comparable[] getValues(Tuple tuple) {
+        Comparable[] values = new Comparable[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++)
+            values[i] = (Comparable) tuple.getColValue(colNames[i]);
+        return values;
+    }
+
+    // Middle value between min and max of the same type, used to split a node
+    private static Comparable getMiddle(Comparable min, Comparable max) {
+        if (min instanceof Integer)
+            return (int) (((long) (Integer) min + (Integer) max) / 2);
+        if (min instanceof Double)
+            return ((Double) min + (Double) max) / 2;
+        if (min instanceof Date)
+            return new Date((((Date) min).getTime() + ((Date) max).getTime()) / 2);
+        return getMiddleString((String) min, (String) max);
+    }
+
+    // Strings are read as numbers with one digit per character, padded to the same length
+    private static String getMiddleString(String min, String max) {
+        int length = Math.max(min.length(), max.length());
+        BigInteger base = BigInteger.valueOf(Character.MAX_VALUE + 1);
+        BigInteger sum = toNumber(min, length, base).add(toNumber(max, length, base));
+        BigInteger middle = sum.shiftRight(1);
+
+        char[] chars = new char[length];
+        for (int i = length - 1; i >= 0; i--) {
+            BigInteger[] divRem = middle.divideAndRemainder(base);
+            chars[i] = (char) divRem[1].intValue();
+            middle = divRem[0];
+        }
+
+        int end = length; // trailing padding is removed
+        while (end > 0 && chars[end - 1] == 0)
+            end--;
+        return new String(chars, 0, end);
+    }
+
+    private static BigInteger toNumber(String str, int length, BigInteger base) {
+        BigInteger number = BigInteger.ZERO;
+        for (int i = 0; i < length; i++)
+            number = number.multiply(base).add(BigInteger.valueOf(i < str.length() ? str.charAt(i) : 0));
+        return number;
+    }
+
+
+    private static class OctreeNode {
+        private final Comparable[] mins; // the node covers values between mins and maxs of every column
+        private final Comparable[] maxs;
+        private final Comparable[] middles;
+        private final int depth;
+        private Vector<Point> points; // null if the node was split
+        private OctreeNode[] children; // null while the node is a leaf
+
+        private OctreeNode(Comparable[] mins, Comparable[] maxs, int depth) {
+            this.mins = mins;
+            this.maxs = maxs;
+            this.depth = depth;
+            this.middles = new Comparable[DIMENSIONS];
+            for (int i = 0; i < DIMENSIONS; i++)
+                middles[i] = getMiddle(mins[i], maxs[i]);
+            this.points = new Vector<>();
+        }
+
+        private void insert(Comparable[] values, IndexEntry entry, int nodeCapacity) {
+            if (children != null) {
+                children[getOctant(values)].insert(values, entry, nodeCapacity);
+                return;
+            }
+
+            Point point = getPoint(values);
+            if (point != null) { // duplicate values go to the overflow bucket of the point
+                point.bucket.add(entry);
+                return;
+            }
+
+            point = new Point(values);
+            point.bucket.add(entry);
+            points.add(point);
+
+            if (points.size() > nodeCapacity && depth < MAX_DEPTH)
+                split(nodeCapacity);
+        }
+
+        private void split(int nodeCapacity) {
+            children = new OctreeNode[1 << DIMENSIONS];
+            for (int octant = 0; octant < children.length; octant++) {
+                Comparable[] childMins = new Comparable[DIMENSIONS];
+                Comparable[] childMaxs = new Comparable[DIMENSIONS];
+                for (int i = 0; i < DIMENSIONS; i++) {
+                    boolean isUpper = (octant & (1 << i)) != 0;
+                    childMins[i] = isUpper ? middles[i] : mins[i];
+                    childMaxs[i] = isUpper ? maxs[i] : middles[i];
+                }
+                children[octant] = new OctreeNode(childMins, childMaxs, depth + 1);
+            }
+
+            Vector<Point> oldPoints = points;
+            points = null;
+            for (Point point : oldPoints)
+                for (IndexEntry entry : point.bucket)
+                    children[getOctant(point.values)].insert(point.values, entry, nodeCapacity);
+        }
+
+        // bit i of the octant is set if the value of column i is greater than the middle
+        private int getOctant(Comparable[] values) {
+            int octant = 0;
+            for (int i = 0; i < DIMENSIONS; i++)
+                if (values[i].compareTo(middles[i]) > 0)
+                    octant |= 1 << i;
+            return octant;
+        }
+
+        private OctreeNode findLeaf(Comparable[] values) {
+            OctreeNode node = this;
+            while (node.children != null)
+                node = node.children[node.getOctant(values)];
+            return node;
+        }
+
+        private Point getPoint(Comparable[] values) {
+            for (Point point : points)
+                if (point.hasValues(values))
+                    return point;
+            return null;
+        }
+
+        private void getEntries(Vector<Comparable[]> values, Vector<IndexEntry> entries) {
+            if (children != null) {
+                for (OctreeNode child : children)
+                    child.getEntries(values, entries);
+                return;
+            }
+
+            for (Point point : points)
+                for (IndexEntry entry : point.bucket) {
+                    values.add(point.values);
+                    entries.add(entry);
+                }
+        }
+
+        private void search(Comparable[] mins, boolean[] minInclusive, Comparable[] maxs, boolean[] maxInclusive, Vector<IndexEntry> result) {
+            for (int i = 0; i < DIMENSIONS; i++) {
+                if (mins[i] != null && mins[i].compareTo(this.maxs[i]) > 0)
+                    return;
+                if (maxs[i] != null && maxs[i].compareTo(this.mins[i]) < 0)
+                    return;
+            }
+
+            if (children != null) {
+                for (OctreeNode child : children)
+                    child.search(mins, minInclusive, maxs, maxInclusive, result);
+                return;
+            }
+
+            for (Point point : points)
+                if (point.isInRange(mins, minInclusive, maxs, maxInclusive))
+                    result.addAll(point.bucket);
+        }
+    }
+
+    private static class Point {
+        private final Comparable[] values;
+        private final Vector<IndexEntry> bucket; // entries of all tuples having these values
+
+        private Point(Comparable[] values) {
+            this.values = values;
+            this.bucket = new Vector<>();
+        }
+
+        private boolean hasValues(Comparable[] otherValues) {
+            for (int i = 0; i < DIMENSIONS; i++)
+                if (values[i].compareTo(otherValues[i]) != 0)
+                    return false;
+            return true;
+        }
+
+        private boolean isInRange(Comparable[] mins, boolean[] minInclusive, Comparable[] maxs, boolean[] maxInclusive) {
+            for (int i = 0; i < DIMENSIONS; i++) {
+                if (mins[i] != null && (minInclusive[i] ? values[i].compareTo(mins[i]) < 0 : values[i].compareTo(mins[i]) <= 0))
+                    return false;
+                if (maxs[i] != null && (maxInclusive[i] ? values[i].compareTo(maxs[i]) > 0 : values[i].compareTo(maxs[i]) >= 0))
+                    return false;
+            }
+            return true;
+        }
+
+        private int indexOfEntry(Object clusterKeyValue) {
+            for (int i = 0; i < bucket.size(); i++)
+                if (bucket.get(i).getClusterKeyValue().equals(clusterKeyValue))
+                    return i;
+            return -1;
+        }
+    }
+}
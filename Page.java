@@ -5,19 +5,22 @@ import exceptions.DBAppException;
 import exceptions.DBNotFoundException;
 
 import java.io.IOException;
-import java.io.Serializable;
+import java.util.Hashtable;
+import java.util.TreeSet;
 import java.util.Vector;
 
 import Utils.Utils;
+import model.TableSchema;
 import model.Tuple;
 
-public class Page implements Serializable {
+public class Page {
     private final Vector<Comparable> tuples; // allows only insertion of Tuple, Sorted by clusterKey
     private final String tableName;
     private final int pageIndex; // start from 0
     private Object min;
     private Object max;
     private PageReference pageReference;
+    private boolean isZoneMapStale; // single tuple changes only widened the zone map, see refreshZoneMap
 
     public Page(String tableName, int pageIndex) {
         this.tableName = tableName;
@@ -29,6 +32,29 @@ public class Page implements Serializable {
         this.pageReference = new PageReference(tableName, pageIndex);
     }
 
+    // Used for pages built from many tuples at once, tuples must already be sorted by clusterKey
+    public Page(String tableName, int pageIndex, Vector<Comparable> tuples) {
+        this.tableName = tableName;
+        this.pageIndex = pageIndex;
+        this.tuples = tuples;
+
+        this.pageReference = new PageReference(tableName, pageIndex);
+        updateMinMax();
+        updateZoneMap();
+    }
+
+    // Used when reading a page from disk, tuples must already be sorted by clusterKey.
+    // The PageReference of the table describes the page as it was written, so its zone map is not computed again
+    public Page(String tableName, int pageIndex, Vector<Comparable> tuples, PageReference pageReference) {
+        this.tableName = tableName;
+        this.pageIndex = pageIndex;
+        this.tuples = tuples;
+        this.min = tuples.isEmpty() ? null : ((Tuple) tuples.get(0)).getClusterKeyValue();
+        this.max = tuples.isEmpty() ? null : ((Tuple) tuples.lastElement()).getClusterKeyValue();
+
+        this.pageReference = pageReference;
+    }
+
 
     public Tuple getTuple(Object clusterKeyValue) throws DBAppException {
         Comparable searchKey = (Comparable) clusterKeyValue; // contains only clusterKeyValue to be used in search
@@ -40,6 +66,10 @@ public class Page implements Serializable {
         return (Tuple) tuples.get(index);
     }
 
+    public boolean containsTuple(Object clusterKeyValue) {
+        return Utils.binarySearch(tuples, (Comparable) clusterKeyValue) >= 0;
+    }
+
     public void addTuple(Tuple t) throws DBAppException {
         int index = Utils.binarySearch(tuples, t);
         if (index >= 0)
@@ -49,51 +79,218 @@ public class Page implements Serializable {
         tuples.add(insertIndex, t);
 
         updateMinMax();
+        addToZoneMap(t);
     }
 
     public Tuple removeTuple(Object clusterKeyValue) throws DBAppException {
         if (clusterKeyValue == null)
             throw new DBNotFoundException("Null clusterKeyValue");
-        Tuple t = Tuple.createInstance(clusterKeyValue); // contains only clusterKeyValue to be used in search
-        int index = Utils.binarySearch(tuples, t);
+        int index = Utils.binarySearch(tuples, (Comparable) clusterKeyValue);
         if (index < 0)
             throw new DBNotFoundException("Tuple does not exist");
 
-        t = (Tuple) tuples.get(index);
+        Tuple t = (Tuple) tuples.get(index);
         tuples.remove(index);
 
         updateMinMax();
+        removeFromZoneMap(t);
 
         return t;
     }
 
+    // Removes and returns all tuples starting from index, used to split the page
+    public Vector<Comparable> removeTuplesFrom(int index) {
+        Vector<Comparable> removed = new Vector<>(tuples.subList(index, tuples.size()));
+        tuples.setSize(index);
+
+        updateMinMax();
+        updateZoneMap();
+
+        return removed;
+    }
+
+    // Removes and returns the tuples from index from to index to (exclusive), used by range deletes
+    public Vector<Comparable> removeTuples(int from, int to) {
+        Vector<Comparable> removed = new Vector<>(tuples.subList(from, to));
+        tuples.subList(from, to).clear();
+
+        updateMinMax();
+        updateZoneMap();
+
+        return removed;
+    }
+
     public void updateTuple(Tuple t) throws DBAppException {
         int index = Utils.binarySearch(tuples, t);
         if (index < 0)
             throw new DBNotFoundException("Tuple does not exist");
 
         // No need to sort again, since updateTable will not update clusterKey
-        tuples.set(index, t);
+        Tuple old = (Tuple) tuples.set(index, t);
 
-        updateMinMax();
+        removeFromZoneMap(old);
+        addToZoneMap(t);
+    }
+
+    // Same as updateTuple for many tuples, the zone map is computed once
+    public void updateTuples(Vector<Tuple> updatedTuples) throws DBAppException {
+        for (Tuple t : updatedTuples) {
+            int index = Utils.binarySearch(tuples, t);
+            if (index < 0)
+                throw new DBNotFoundException("Tuple does not exist");
+            tuples.set(index, t);
+        }
+
+        updateZoneMap();
     }
 
     public boolean isPageFull(Page page) throws IOException {
         return page.getSize() >= Utils.getMaxRowsCountInPage();
     }
 
+    // Computes the zone map again if single tuple changes left it wider than the tuples, and dropped dictionaries
+    // of values they added. Called before the page is written, so the page is encoded with its full dictionaries
+    public void refreshZoneMap() {
+        if (isZoneMapStale)
+            updateZoneMap();
+    }
+
 
     // Helper Methods
-    public void updateMinMax() {
+    private void updateMinMax() {
         int size = getSize();
-        min = ((Tuple) tuples.get(0)).getClusterKeyValue();
-        max = ((Tuple) tuples.get(size - 1)).getClusterKeyValue();
+        min = size == 0 ? null : ((Tuple) tuples.get(0)).getClusterKeyValue();
+        max = size == 0 ? null : ((Tuple) tuples.get(size - 1)).getClusterKeyValue();
 
         pageReference.setMin(min);
         pageReference.setMax(max);
         pageReference.setSize(size);
     }
 
+    // Widens the zone map with the values of an added tuple, the Bloom filters get them as well
+    private void addToZoneMap(Tuple t) {
+        TableSchema schema = t.getSchema();
+        for (int col = 0; col < schema.getColumnsCount(); col++)
+            pageReference.addValue(schema.getColumnName(col), (Comparable) t.getValue(col));
+        isZoneMapStale = true;
+    }
+
+    // Only the null counts are exact after a tuple is removed, min, max, dictionaries and Bloom filters may still
+    // have its values
+    private void removeFromZoneMap(Tuple t) {
+        TableSchema schema = t.getSchema();
+        for (int col = 0; col < schema.getColumnsCount(); col++)
+            if (t.getValue(col) == null)
+                pageReference.removeNull(schema.getColumnName(col));
+        isZoneMapStale = true;
+    }
+
+    // min, max and null count of every column, kept in the PageReference so pages can be skipped without reading them
+    // String columns with at most MaximumDictionarySize distinct values also get their sorted dictionary, the other
+    // non clustering columns get a Bloom filter unless BloomFilterFalsePositiveRate is 0
+    private void updateZoneMap() {
+        Hashtable<String, Comparable> htblColMin = new Hashtable<>();
+        Hashtable<String, Comparable> htblColMax = new Hashtable<>();
+        Hashtable<String, Integer> htblColNullCount = new Hashtable<>();
+        Hashtable<String, Vector<Comparable>> htblColDictionary = new Hashtable<>();
+        Hashtable<String, BloomFilter> htblColBloomFilter = new Hashtable<>();
+        isZoneMapStale = false;
+        if (tuples.isEmpty()) {
+            pageReference.setZoneMap(htblColMin, htblColMax, htblColNullCount, htblColDictionary, htblColBloomFilter);
+            return;
+        }
+
+        double falsePositiveRate = getBloomFilterFalsePositiveRate();
+        int bloomFilterCapacity = falsePositiveRate > 0 ? getMaxRowsCount() : 0;
+
+        TableSchema schema = ((Tuple) tuples.get(0)).getSchema();
+        for (int col = 0; col < schema.getColumnsCount(); col++) {
+            Comparable colMin = null;
+            Comparable colMax = null;
+            int nullCount = 0;
+            for (Comparable c : tuples) {
+                Comparable value = (Comparable) ((Tuple) c).getValue(col);
+                if (value == null) {
+                    nullCount++;
+                    continue;
+                }
+                if (colMin == null || value.compareTo(colMin) < 0)
+                    colMin = value;
+                if (colMax == null || value.compareTo(colMax) > 0)
+                    colMax = value;
+            }
+
+            String colName = schema.getColumnName(col);
+            if (colMin != null) {
+                htblColMin.put(colName, colMin);
+                htblColMax.put(colName, colMax);
+            }
+            htblColNullCount.put(colName, nullCount);
+
+            Vector<Comparable> dictionary = schema.getColumnType(col).equals("java.lang.string") ? getDictionary(col) : null;
+            if (dictionary != null)
+                htblColDictionary.put(colName, dictionary);
+            else if (falsePositiveRate > 0 && col != schema.getClusterKeyIndex() && colMin != null)
+                htblColBloomFilter.put(colName, BloomFilter.create(getValues(col), bloomFilterCapacity, falsePositiveRate));
+        }
+
+        pageReference.setZoneMap(htblColMin, htblColMax, htblColNullCount, htblColDictionary, htblColBloomFilter);
+    }
+
+    // Non null values of the column
+    private Vector<Comparable> getValues(int col) {
+        Vector<Comparable> values = new Vector<>(tuples.size());
+        for (Comparable c : tuples) {
+            Comparable value = (Comparable) ((Tuple) c).getValue(col);
+            if (value != null)
+                values.add(value);
+        }
+        return values;
+    }
+
+    private static double getBloomFilterFalsePositiveRate() {
+        try {
+            return Utils.getBloomFilterFalsePositiveRate();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    // Bloom filters are sized for a full page, a split page keeps getting rows until it is full again
+    private int getMaxRowsCount() {
+        try {
+            return Utils.getMaxRowsCountInPage();
+        } catch (IOException e) {
+            return tuples.size();
+        }
+    }
+
+    // Sorted distinct non null values of the column, null if there are more than MaximumDictionarySize of them
+    // or if a dictionary would not be smaller than writing every value
+    private Vector<Comparable> getDictionary(int col) {
+        int maxSize;
+        try {
+            maxSize = Utils.getMaximumDictionarySize();
+        } catch (IOException e) {
+            return null;
+        }
+
+        TreeSet<Comparable> values = new TreeSet<>();
+        int valuesCount = 0;
+        for (Comparable c : tuples) {
+            Comparable value = (Comparable) ((Tuple) c).getValue(col);
+            if (value == null)
+                continue;
+            valuesCount++;
+            if (values.add(value) && values.size() > maxSize)
+                return null;
+        }
+
+        if (values.isEmpty() || values.size() == valuesCount)
+            return null;
+        return new Vector<>(values);
+    }
+
     public int getPageIndex() {
         return pageIndex;
     }
@@ -110,6 +307,10 @@ public class Page implements Serializable {
         return tuples.size();
     }
 
+    public Vector<Comparable> getTuples() {
+        return tuples;
+    }
+
     public boolean isEmpty() {
         return tuples.isEmpty();
     }
@@ -0,0 +1,241 @@
+package Utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Compression of page files. Every stored page starts with the codec it was written with, so pages written
+// with different codecs can be read from the same table after its codec changes.
+// Stored page: codec, then the page as is for NONE, otherwise the page length followed by the compressed page.
+// A page that does not get smaller is stored with NONE.
+// LZ is a small LZ77 codec in the style of LZ4, much faster than DEFLATE but with a lower ratio.
+public class PageCodec {
+    public static final byte NONE = 0;
+    public static final byte DEFLATE = 1;
+    public static final byte LZ = 2;
+
+    private static final int MIN_MATCH = 4;
+    private static final int MAX_OFFSET = 65535;
+    private static final int HASH_BITS = 12;
+
+    public static byte[] encode(byte[] page, byte codec, int level) {
+        byte[] compressed = null;
+        if (codec == DEFLATE)
+            compressed = deflate(page, level);
+        else if (codec == LZ)
+            compressed = lzCompress(page);
+
+        if (compressed == null || compressed.length + 4 >= page.length) {
+            byte[] stored = new byte[page.length + 1];
+            stored[0] = NONE;
+            System.arraycopy(page, 0, stored, 1, page.length);
+            return stored;
+        }
+
+        byte[] stored = new byte[compressed.length + 5];
+        stored[0] = codec;
+        writeInt(stored, 1, page.length);
+        System.arraycopy(compressed, 0, stored, 5, compressed.length);
+        return stored;
+    }
+
+    public static byte[] decode(byte[] stored) throws IOException {
+        byte codec = stored[0];
+        if (codec == NONE)
+            return Arrays.copyOfRange(stored, 1, stored.length);
+
+        int length = readInt(stored, 1);
+        if (codec == DEFLATE)
+            return inflate(stored, 5, length);
+        if (codec == LZ)
+            return lzDecompress(stored, 5, length);
+        throw new IOException("Unsupported page codec " + codec);
+    }
+
+    // Parses a codec as given to createTable: none, lz, deflate or deflate:level (level 1 to 9)
+    public static byte getCodec(String compression) {
+        String name = compression.toLowerCase();
+        int colon = name.indexOf(':');
+        if (colon >= 0)
+            name = name.substring(0, colon);
+
+        switch (name) {
+            case "none":
+                return NONE;
+            case "deflate":
+                return DEFLATE;
+            case "lz":
+                return LZ;
+            default:
+                return -1;
+        }
+    }
+
+    // Level of a deflate codec, defaultLevel if the codec has none, -1 if the level is invalid
+    public static int getLevel(String compression, int defaultLevel) {
+        int colon = compression.indexOf(':');
+        if (colon < 0)
+            return defaultLevel;
+
+        try {
+            int level = Integer.parseInt(compression.substring(colon + 1));
+            return level >= 1 && level <= 9 ? level : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+
+    // Helper methods
+    private static byte[] deflate(byte[] data, int level) {
+        Deflater deflater = new Deflater(level);
+        deflater.setInput(data);
+        deflater.finish();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+        byte[] buffer = new byte[4096];
+        while (!deflater.finished())
+            out.write(buffer, 0, deflater.deflate(buffer));
+        deflater.end();
+
+        return out.toByteArray();
+    }
+
+    private static byte[] inflate(byte[] data, int offset, int length) throws IOException {
+        Inflater inflater = new Inflater();
+        inflater.setInput(data, offset, data.length - offset);
+
+        byte[] result = new byte[length];
+        try {
+            int read = 0;
+            while (read < length && !inflater.finished()) {
+                int n = inflater.inflate(result, read, length - read);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    break;
+                read += n;
+            }
+            if (read != length)
+                throw new IOException("Corrupted compressed page");
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupted compressed page", e);
+        } finally {
+            inflater.end();
+        }
+        return result;
+    }
+
+    // A sequence is a token, literals, then a match. Token: literals count in the high 4 bits and match length - 4
+    // in the low 4 bits, a value of 15 is followed by more bytes added to it until a byte less than 255.
+    // The match is given by its offset back from the current position in 2 bytes. The last sequence has no match.
+    static byte[] lzCompress(byte[] src) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(src.length / 2 + 16);
+        int[] table = new int[1 << HASH_BITS]; // last position of every hashed 4 bytes
+        Arrays.fill(table, -1);
+
+        int anchor = 0; // first byte not written yet
+        int i = 0;
+        while (i + MIN_MATCH <= src.length) {
+            int sequence = readInt(src, i);
+            int hash = (sequence * -1640531535) >>> (32 - HASH_BITS);
+            int ref = table[hash];
+            table[hash] = i;
+
+            if (ref < 0 || i - ref > MAX_OFFSET || readInt(src, ref) != sequence) {
+                i++;
+                continue;
+            }
+
+            int matchLength = MIN_MATCH;
+            while (i + matchLength < src.length && src[ref + matchLength] == src[i + matchLength])
+                matchLength++;
+
+            writeSequence(out, src, anchor, i - anchor, i - ref, matchLength);
+            i += matchLength;
+            anchor = i;
+        }
+
+        writeSequence(out, src, anchor, src.length - anchor, 0, 0);
+        return out.toByteArray();
+    }
+
+    private static void writeSequence(ByteArrayOutputStream out, byte[] src, int literalsStart, int literalsCount,
+                                      int offset, int matchLength) {
+        int matchCode = matchLength == 0 ? 0 : matchLength - MIN_MATCH;
+        out.write((Math.min(literalsCount, 15) << 4) | Math.min(matchCode, 15));
+        if (literalsCount >= 15)
+            writeLength(out, literalsCount - 15);
+        out.write(src, literalsStart, literalsCount);
+
+        if (matchLength == 0) // last sequence
+            return;
+        out.write(offset & 0xFF);
+        out.write(offset >>> 8);
+        if (matchCode >= 15)
+            writeLength(out, matchCode - 15);
+    }
+
+    private static void writeLength(ByteArrayOutputStream out, int length) {
+        while (length >= 255) {
+            out.write(255);
+            length -= 255;
+        }
+        out.write(length);
+    }
+
+    static byte[] lzDecompress(byte[] src, int offset, int length) throws IOException {
+        byte[] result = new byte[length];
+        int in = offset;
+        int out = 0;
+        try {
+            while (in < src.length) {
+                int token = src[in++] & 0xFF;
+
+                int literalsCount = token >>> 4;
+                if (literalsCount == 15)
+                    do {
+                        literalsCount += src[in] & 0xFF;
+                    } while ((src[in++] & 0xFF) == 255);
+                System.arraycopy(src, in, result, out, literalsCount);
+                in += literalsCount;
+                out += literalsCount;
+
+                if (in >= src.length) // last sequence
+                    break;
+
+                int matchOffset = (src[in] & 0xFF) | ((src[in + 1] & 0xFF) << 8);
+                in += 2;
+                int matchLength = token & 0x0F;
+                if (matchLength == 15)
+                    do {
+                        matchLength += src[in] & 0xFF;
+                    } while ((src[in++] & 0xFF) == 255);
+                matchLength += MIN_MATCH;
+
+                int ref = out - matchOffset; // the match can overlap the bytes it writes so it is copied byte by byte
+                for (int j = 0; j < matchLength; j++)
+                    result[out++] = result[ref + j];
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Corrupted compressed page", e);
+        }
+
+        if (out != length)
+            throw new IOException("Corrupted compressed page");
+        return result;
+    }
+
+    private static int readInt(byte[] data, int offset) {
+        return ((data[offset] & 0xFF) << 24) | ((data[offset + 1] & 0xFF) << 16)
+                | ((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF);
+    }
+
+    private static void writeInt(byte[] data, int offset, int value) {
+        data[offset] = (byte) (value >>> 24);
+        data[offset + 1] = (byte) (value >>> 16);
+        data[offset + 2] = (byte) (value >>> 8);
+        data[offset + 3] = (byte) value;
+    }
+}
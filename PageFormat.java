@@ -0,0 +1,404 @@
+package Utils;
+
+import Page.BloomFilter;
+import Page.Page;
+import Page.PageReference;
+import index.Index;
+import index.IndexEntry;
+import model.Table;
+import model.TableSchema;
+import model.Tuple;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Hashtable;
+import java.util.Vector;
+
+// Binary layout of page and table files.
+// Page:  magic, version, schemaId, slotCount, min, max, the dictionary of every column (size, then its sorted values,
+//        size 0 if the column is not dictionary encoded), then for every tuple a null bitmap followed by its non null values
+//        in the column order of the metadata file. A dictionary encoded value is written as its position in the dictionary,
+//        in one byte if the dictionary has at most 256 values, otherwise in two bytes.
+//        Column names are never written, they come from the TableSchema.
+//        A page is compressed as a whole once encoded, see PageCodec.
+// Table: magic, version, schemaId, page codec, compression level, stale indexes flag, rowsCount, nextPageIndex, free page indexes, pagesCount, then for every page reference
+//        pageIndex, size, min, max and the zone map (min, max, null count, dictionary or -1, Bloom filter or -1) of every column.
+//        A Bloom filter is written as its number of longs, its hash count then its longs.
+//        The stale indexes flag is set while the index files of the table may miss changes of its pages.
+// Index: magic, version, schemaId, column names, entriesCount, then for every entry the values of its columns, pageIndex and clusterKey.
+// Integer, Double and Date are fixed width (4, 8, 8 bytes), Strings are their UTF-8 bytes prefixed by their count in 4 bytes.
+public class PageFormat {
+    private static final int PAGE_MAGIC = 0x44425047; // "DBPG"
+    private static final int TABLE_MAGIC = 0x44425442; // "DBTB"
+    private static final int INDEX_MAGIC = 0x44424958; // "DBIX"
+    private static final short PAGE_VERSION = 3;
+    private static final short TABLE_VERSION = 8;
+    private static final short INDEX_VERSION = 1;
+
+
+    public static byte[] encodePage(Page page, TableSchema schema) throws IOException {
+        page.refreshZoneMap(); // the dictionaries of the page reference are the ones the page is written with
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeInt(PAGE_MAGIC);
+        out.writeShort(PAGE_VERSION);
+        out.writeInt(schema.getSchemaId());
+        out.writeInt(page.getSize());
+
+        String clusterKeyType = schema.getClusterKeyType();
+        writeNullableValue(out, page.getMin(), clusterKeyType);
+        writeNullableValue(out, page.getMax(), clusterKeyType);
+
+        int columnsCount = schema.getColumnsCount();
+        Vector<Comparable>[] dictionaries = new Vector[columnsCount];
+        for (int i = 0; i < columnsCount; i++) {
+            dictionaries[i] = page.getPageReference().getColDictionary(schema.getColumnName(i));
+            out.writeInt(dictionaries[i] == null ? 0 : dictionaries[i].size());
+            if (dictionaries[i] != null)
+                for (Comparable value : dictionaries[i])
+                    writeValue(out, value, schema.getColumnType(i));
+        }
+
+        byte[] nullBitmap = new byte[(columnsCount + 7) / 8];
+        for (Comparable c : page.getTuples()) {
+            Tuple tuple = (Tuple) c;
+
+            for (int i = 0; i < nullBitmap.length; i++)
+                nullBitmap[i] = 0;
+            for (int i = 0; i < columnsCount; i++)
+                if (tuple.getValue(i) == null)
+                    nullBitmap[i / 8] |= (byte) (1 << (i % 8));
+            out.write(nullBitmap);
+
+            for (int i = 0; i < columnsCount; i++) {
+                Object value = tuple.getValue(i);
+                if (value == null)
+                    continue;
+                if (dictionaries[i] == null)
+                    writeValue(out, value, schema.getColumnType(i));
+                else
+                    writeCode(out, Utils.binarySearch(dictionaries[i], (Comparable) value), dictionaries[i].size());
+            }
+        }
+
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    // pageReference is the reference of the page in its table, the page gets it instead of computing its zone map.
+    // If it is null or does not describe the page, the zone map is computed from the tuples
+    public static Page decodePage(byte[] data, String tableName, int pageIndex, TableSchema schema, PageReference pageReference) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+
+        readHeader(in, PAGE_MAGIC, PAGE_VERSION, schema);
+        int slotCount = in.readInt();
+
+        String clusterKeyType = schema.getClusterKeyType();
+        readNullableValue(in, clusterKeyType); // min and max are taken from the tuples
+        readNullableValue(in, clusterKeyType);
+
+        // tuples share the String objects of the dictionaries instead of having a copy of every value
+        int columnsCount = schema.getColumnsCount();
+        Object[][] dictionaries = new Object[columnsCount][];
+        for (int i = 0; i < columnsCount; i++) {
+            int dictionarySize = in.readInt();
+            if (dictionarySize == 0)
+                continue;
+            dictionaries[i] = new Object[dictionarySize];
+            for (int j = 0; j < dictionarySize; j++)
+                dictionaries[i][j] = readValue(in, schema.getColumnType(i));
+        }
+
+        byte[] nullBitmap = new byte[(columnsCount + 7) / 8];
+        Vector<Comparable> tuples = new Vector<>(slotCount);
+        for (int slot = 0; slot < slotCount; slot++) {
+            in.readFully(nullBitmap);
+
+            Object[] values = new Object[columnsCount];
+            for (int i = 0; i < columnsCount; i++) {
+                boolean isNull = (nullBitmap[i / 8] & (1 << (i % 8))) != 0;
+                if (isNull)
+                    continue;
+                if (dictionaries[i] == null)
+                    values[i] = readValue(in, schema.getColumnType(i));
+                else
+                    values[i] = dictionaries[i][readCode(in, dictionaries[i].length)];
+            }
+            tuples.add(new Tuple(schema, values));
+        }
+
+        if (pageReference == null || pageReference.getSize() != slotCount)
+            return new Page(tableName, pageIndex, tuples);
+        return new Page(tableName, pageIndex, tuples, pageReference);
+    }
+
+    public static byte[] encodeTable(Table table, TableSchema schema, boolean hasStaleIndexes) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeInt(TABLE_MAGIC);
+        out.writeShort(TABLE_VERSION);
+        out.writeInt(schema.getSchemaId());
+        out.writeByte(table.getPageCodec());
+        out.writeByte(table.getCompressionLevel());
+        out.writeBoolean(hasStaleIndexes);
+        out.writeInt(table.getRowsCount());
+        out.writeInt(table.getNextPageIndex());
+        out.writeInt(table.getFreePageIndexes().size());
+        for (int pageIndex : table.getFreePageIndexes())
+            out.writeInt(pageIndex);
+        out.writeInt(table.getPagesCount());
+
+        String clusterKeyType = schema.getClusterKeyType();
+        for (int i = 0; i < table.getPagesCount(); i++) {
+            PageReference pageReference = table.getPageReference(i);
+            out.writeInt(pageReference.getPageIndex());
+            out.writeInt(pageReference.getSize());
+            writeNullableValue(out, pageReference.getMin(), clusterKeyType);
+            writeNullableValue(out, pageReference.getMax(), clusterKeyType);
+
+            for (int col = 0; col < schema.getColumnsCount(); col++) {
+                String colName = schema.getColumnName(col);
+                writeNullableValue(out, pageReference.getColMin(colName), schema.getColumnType(col));
+                writeNullableValue(out, pageReference.getColMax(colName), schema.getColumnType(col));
+                out.writeInt(pageReference.getColNullCount(colName));
+
+                Vector<Comparable> dictionary = pageReference.getColDictionary(colName);
+                out.writeInt(dictionary == null ? -1 : dictionary.size());
+                if (dictionary != null)
+                    for (Comparable value : dictionary)
+                        writeValue(out, value, schema.getColumnType(col));
+
+                BloomFilter bloomFilter = pageReference.getColBloomFilter(colName);
+                out.writeInt(bloomFilter == null ? -1 : bloomFilter.getBits().length);
+                if (bloomFilter != null) {
+                    out.writeByte(bloomFilter.getHashCount());
+                    for (long word : bloomFilter.getBits())
+                        out.writeLong(word);
+                }
+            }
+        }
+
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    public static Table decodeTable(byte[] data, TableSchema schema) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+
+        readHeader(in, TABLE_MAGIC, TABLE_VERSION, schema);
+        byte pageCodec = in.readByte();
+        int compressionLevel = in.readByte();
+        in.readBoolean(); // see hasStaleIndexes
+        int rowsCount = in.readInt();
+        int nextPageIndex = in.readInt();
+        int freeCount = in.readInt();
+        Vector<Integer> freePageIndexes = new Vector<>(freeCount);
+        for (int i = 0; i < freeCount; i++)
+            freePageIndexes.add(in.readInt());
+        int pagesCount = in.readInt();
+
+        String tableName = schema.getTableName();
+        String clusterKeyType = schema.getClusterKeyType();
+        Vector<Comparable> pagesReference = new Vector<>(pagesCount);
+        for (int i = 0; i < pagesCount; i++) {
+            int pageIndex = in.readInt();
+            int size = in.readInt();
+            Object min = readNullableValue(in, clusterKeyType);
+            Object max = readNullableValue(in, clusterKeyType);
+
+            Hashtable<String, Comparable> htblColMin = new Hashtable<>();
+            Hashtable<String, Comparable> htblColMax = new Hashtable<>();
+            Hashtable<String, Integer> htblColNullCount = new Hashtable<>();
+            Hashtable<String, Vector<Comparable>> htblColDictionary = new Hashtable<>();
+            Hashtable<String, BloomFilter> htblColBloomFilter = new Hashtable<>();
+            for (int col = 0; col < schema.getColumnsCount(); col++) {
+                String colName = schema.getColumnName(col);
+                Comparable colMin = (Comparable) readNullableValue(in, schema.getColumnType(col));
+                Comparable colMax = (Comparable) readNullableValue(in, schema.getColumnType(col));
+                if (colMin != null)
+                    htblColMin.put(colName, colMin);
+                if (colMax != null)
+                    htblColMax.put(colName, colMax);
+                htblColNullCount.put(colName, in.readInt());
+
+                int dictionarySize = in.readInt();
+                if (dictionarySize >= 0) {
+                    Vector<Comparable> dictionary = new Vector<>(dictionarySize);
+                    for (int j = 0; j < dictionarySize; j++)
+                        dictionary.add((Comparable) readValue(in, schema.getColumnType(col)));
+                    htblColDictionary.put(colName, dictionary);
+                }
+
+                int wordsCount = in.readInt();
+                if (wordsCount >= 0) {
+                    int hashCount = in.readByte();
+                    long[] bits = new long[wordsCount];
+                    for (int j = 0; j < wordsCount; j++)
+                        bits[j] = in.readLong();
+                    htblColBloomFilter.put(colName, new BloomFilter(bits, hashCount));
+                }
+            }
+
+            pagesReference.add(new PageReference(tableName, pageIndex, min, max, size, htblColMin, htblColMax, htblColNullCount,
+                    htblColDictionary, htblColBloomFilter));
+        }
+
+        return new Table(tableName, schema.getClusterKeyName(), pageCodec, compressionLevel, rowsCount, nextPageIndex, freePageIndexes, pagesReference);
+    }
+
+
+    // true if the table file was written while its indexes had changes not yet written
+    public static boolean hasStaleIndexes(byte[] data, TableSchema schema) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+
+        readHeader(in, TABLE_MAGIC, TABLE_VERSION, schema);
+        in.readByte(); // page codec
+        in.readByte(); // compression level
+        return in.readBoolean();
+    }
+
+    public static byte[] encodeIndex(Index index, TableSchema schema) throws IOException {
+        Vector<Comparable[]> values = new Vector<>();
+        Vector<IndexEntry> entries = new Vector<>();
+        index.getEntries(values, entries);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeInt(INDEX_MAGIC);
+        out.writeShort(INDEX_VERSION);
+        out.writeInt(schema.getSchemaId());
+        String[] colNames = index.getColumnNames();
+        out.writeInt(colNames.length);
+        for (String colName : colNames)
+            writeString(out, colName);
+        out.writeInt(entries.size());
+
+        String clusterKeyType = schema.getClusterKeyType();
+        for (int i = 0; i < entries.size(); i++) {
+            for (int col = 0; col < colNames.length; col++)
+                writeNullableValue(out, values.get(i)[col], schema.getColumnType(colNames[col]));
+            out.writeInt(entries.get(i).getPageIndex());
+            writeValue(out, entries.get(i).getClusterKeyValue(), clusterKeyType);
+        }
+
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    // Inserts the entries of the index file into index, an empty index on the same columns in any order
+    public static void decodeIndex(byte[] data, Index index, TableSchema schema) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+
+        readHeader(in, INDEX_MAGIC, INDEX_VERSION, schema);
+        String[] colNames = new String[in.readInt()];
+        for (int col = 0; col < colNames.length; col++) {
+            colNames[col] = readString(in);
+            if (!schema.hasColumn(colNames[col]))
+                throw new IOException("Index column " + colNames[col] + " does not exist in table " + schema.getTableName());
+        }
+        int entriesCount = in.readInt();
+
+        String clusterKeyType = schema.getClusterKeyType();
+        for (int i = 0; i < entriesCount; i++) {
+            Object[] values = new Object[schema.getColumnsCount()]; // only the index columns and the clusterKey are set
+            for (String colName : colNames)
+                values[schema.getColumnIndex(colName)] = readNullableValue(in, schema.getColumnType(colName));
+            int pageIndex = in.readInt();
+            values[schema.getClusterKeyIndex()] = readValue(in, clusterKeyType);
+
+            index.insert(new Tuple(schema, values), pageIndex);
+        }
+    }
+
+
+    // Helper methods
+    private static void readHeader(DataInputStream in, int magic, short expectedVersion, TableSchema schema) throws IOException {
+        if (in.readInt() != magic)
+            throw new IOException("Invalid file format for table " + schema.getTableName());
+
+        short version = in.readShort();
+        if (version != expectedVersion)
+            throw new IOException("Unsupported file version " + version);
+
+        if (in.readInt() != schema.getSchemaId())
+            throw new IOException("File schema does not match table schema of " + schema.getTableName());
+    }
+
+    private static void writeCode(DataOutputStream out, int code, int dictionarySize) throws IOException {
+        if (dictionarySize <= 256)
+            out.writeByte(code);
+        else
+            out.writeShort(code);
+    }
+
+    private static int readCode(DataInputStream in, int dictionarySize) throws IOException {
+        return dictionarySize <= 256 ? in.readUnsignedByte() : in.readUnsignedShort();
+    }
+
+    private static void writeNullableValue(DataOutputStream out, Object value, String type) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null)
+            writeValue(out, value, type);
+    }
+
+    private static Object readNullableValue(DataInputStream in, String type) throws IOException {
+        boolean isPresent = in.readBoolean();
+        return isPresent ? readValue(in, type) : null;
+    }
+
+    // Unlike writeUTF, Strings of any length can be written. Also used by the WriteAheadLog
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available())
+            throw new IOException("Invalid String length " + length);
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeValue(DataOutputStream out, Object value, String type) throws IOException {
+        switch (type) {
+            case "java.lang.integer":
+                out.writeInt((Integer) value);
+                break;
+            case "java.lang.double":
+                out.writeDouble((Double) value);
+                break;
+            case "java.util.date":
+                out.writeLong(((Date) value).getTime());
+                break;
+            case "java.lang.string":
+                writeString(out, (String) value);
+                break;
+            default:
+                throw new IOException("Unsupported column type " + type);
+        }
+    }
+
+    private static Object readValue(DataInputStream in, String type) throws IOException {
+        switch (type) {
+            case "java.lang.integer":
+                return in.readInt();
+            case "java.lang.double":
+                return in.readDouble();
+            case "java.util.date":
+                return new Date(in.readLong());
+            case "java.lang.string":
+                return readString(in);
+            default:
+                throw new IOException("Unsupported column type " + type);
+        }
+    }
+}
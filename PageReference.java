@@ -2,20 +2,51 @@ package Page;
 
 import Utils.Utils;
 
-import java.io.Serializable;
+import java.util.Hashtable;
+import java.util.Vector;
 
 // implements Comparable to be able to use binarySearch
-public class PageReference implements Comparable, Serializable {
+// Fields are volatile, queries read them without a latch while an insert into the page updates them
+public class PageReference implements Comparable {
     private String tableName;
     private int pageIndex;
-    private Object min;
-    private Object max;
-    private int size;
+    private volatile Object min;
+    private volatile Object max;
+    private volatile int size;
+    // zone map: min, max and null count of every column in the page, a column with only nulls has no min and max
+    private volatile Hashtable<String, Comparable> htblColMin;
+    private volatile Hashtable<String, Comparable> htblColMax;
+    private volatile Hashtable<String, Integer> htblColNullCount;
+    // sorted distinct values of the String columns having few of them in the page, the page stores them as codes
+    private volatile Hashtable<String, Vector<Comparable>> htblColDictionary;
+    // Bloom filters of the other non clustering columns, for equality lookups on columns with many distinct values
+    private volatile Hashtable<String, BloomFilter> htblColBloomFilter;
 
     public PageReference(String tableName, int pageIndex) {
         this.tableName = tableName;
         this.pageIndex = pageIndex;
         this.size = 0;
+        this.htblColMin = new Hashtable<>();
+        this.htblColMax = new Hashtable<>();
+        this.htblColNullCount = new Hashtable<>();
+        this.htblColDictionary = new Hashtable<>();
+        this.htblColBloomFilter = new Hashtable<>();
+    }
+
+    // Used when reading a table from disk
+    public PageReference(String tableName, int pageIndex, Object min, Object max, int size, Hashtable<String, Comparable> htblColMin,
+                         Hashtable<String, Comparable> htblColMax, Hashtable<String, Integer> htblColNullCount,
+                         Hashtable<String, Vector<Comparable>> htblColDictionary, Hashtable<String, BloomFilter> htblColBloomFilter) {
+        this.tableName = tableName;
+        this.pageIndex = pageIndex;
+        this.min = min;
+        this.max = max;
+        this.size = size;
+        this.htblColMin = htblColMin;
+        this.htblColMax = htblColMax;
+        this.htblColNullCount = htblColNullCount;
+        this.htblColDictionary = htblColDictionary;
+        this.htblColBloomFilter = htblColBloomFilter;
     }
 
     public String getTableName() {
@@ -26,10 +57,6 @@ public class PageReference implements Comparable, Serializable {
         return pageIndex;
     }
 
-    public String getPagePath() {
-        return Utils.getPageFilePath(tableName, pageIndex);
-    }
-
     public Object getMin() {
         return min;
     }
@@ -53,6 +80,100 @@ public class PageReference implements Comparable, Serializable {
         return size;
     }
 
+    public Comparable getColMin(String colName) {
+        return htblColMin.get(colName);
+    }
+
+    public Comparable getColMax(String colName) {
+        return htblColMax.get(colName);
+    }
+
+    public int getColNullCount(String colName) {
+        Integer nullCount = htblColNullCount.get(colName);
+        return nullCount == null ? size : nullCount;
+    }
+
+    // returns the sorted distinct values of the column in the page, null if the column is not dictionary encoded
+    public Vector<Comparable> getColDictionary(String colName) {
+        return htblColDictionary.get(colName);
+    }
+
+    // returns the Bloom filter of the column in the page, null if the column has none
+    public BloomFilter getColBloomFilter(String colName) {
+        return htblColBloomFilter.get(colName);
+    }
+
+    //Access modifier is protected to prevent setting the zone map from outside the package
+    protected void setZoneMap(Hashtable<String, Comparable> htblColMin, Hashtable<String, Comparable> htblColMax,
+                              Hashtable<String, Integer> htblColNullCount, Hashtable<String, Vector<Comparable>> htblColDictionary,
+                              Hashtable<String, BloomFilter> htblColBloomFilter) {
+        this.htblColMin = htblColMin;
+        this.htblColMax = htblColMax;
+        this.htblColNullCount = htblColNullCount;
+        this.htblColDictionary = htblColDictionary;
+        this.htblColBloomFilter = htblColBloomFilter;
+    }
+
+    // Widens the zone map of the column with a value added to the page, so that it still covers every value of the page.
+    // A dictionary without the value is dropped, the page computes it again before it is written
+    protected void addValue(String colName, Comparable value) {
+        if (value == null) {
+            htblColNullCount.merge(colName, 1, Integer::sum);
+            return;
+        }
+        htblColNullCount.putIfAbsent(colName, 0);
+
+        Comparable colMin = htblColMin.get(colName);
+        if (colMin == null || value.compareTo(colMin) < 0)
+            htblColMin.put(colName, value);
+        Comparable colMax = htblColMax.get(colName);
+        if (colMax == null || value.compareTo(colMax) > 0)
+            htblColMax.put(colName, value);
+
+        Vector<Comparable> dictionary = htblColDictionary.get(colName);
+        if (dictionary != null && Utils.binarySearch(dictionary, value) < 0)
+            htblColDictionary.remove(colName);
+        BloomFilter bloomFilter = htblColBloomFilter.get(colName);
+        if (bloomFilter != null) // a new filter, readers without the latch see either the old one or the new one
+            htblColBloomFilter.put(colName, bloomFilter.with(value));
+    }
+
+    protected void removeNull(String colName) {
+        htblColNullCount.computeIfPresent(colName, (k, nullCount) -> nullCount - 1);
+    }
+
+    // returns false if the zone map shows that no tuple of the page can have colName operator value,
+    // Example: mayContain("gpa", ">", 3.5) is false if the max gpa of the page is 3.5 or less
+    public boolean mayContain(String colName, String operator, Comparable value) {
+        Comparable colMin = htblColMin.get(colName);
+        Comparable colMax = htblColMax.get(colName);
+        if (colMin == null || colMax == null) // only nulls, they never match
+            return false;
+
+        switch (operator) {
+            case "=":
+                Vector<Comparable> dictionary = htblColDictionary.get(colName);
+                if (dictionary != null) // exact, the page has the value only if its dictionary has it
+                    return Utils.binarySearch(dictionary, value) >= 0;
+                BloomFilter bloomFilter = htblColBloomFilter.get(colName);
+                if (bloomFilter != null && !bloomFilter.mayContain(value))
+                    return false;
+                return colMin.compareTo(value) <= 0 && colMax.compareTo(value) >= 0;
+            case "!=":
+                return colMin.compareTo(value) != 0 || colMax.compareTo(value) != 0;
+            case ">":
+                return colMax.compareTo(value) > 0;
+            case ">=":
+                return colMax.compareTo(value) >= 0;
+            case "<":
+                return colMin.compareTo(value) < 0;
+            case "<=":
+                return colMin.compareTo(value) <= 0;
+            default:
+                return true;
+        }
+    }
+
     public void setSize(int size) {
         this.size = size;
     }
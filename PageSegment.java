@@ -0,0 +1,192 @@
+package Utils;
+
+import exceptions.DBNotFoundException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+// All pages of a table in one file of fixed size slots, the page with pageIndex i is in slot i.
+// File: magic, version, slotSize, then the slots. Slot: length of the page (0 if the slot is empty), crc32 of the page,
+// then the page. A page failing its crc, Example: a write cut by a crash, is reported instead of being decoded.
+// The file is opened once and read and written with positional reads and writes, so threads reading
+// different pages do not wait for each other. A page larger than a slot makes the file be rewritten
+// with slots twice as large, the new file replaces the old one only once it is complete.
+public class PageSegment {
+    private static final int SEGMENT_MAGIC = 0x44425347; // "DBSG"
+    private static final short VERSION = 2;
+    private static final int SLOT_HEADER_SIZE = 8; // length, crc32
+    private static final int HEADER_SIZE = 10; // magic, version, slotSize
+
+    private final String segmentPath;
+    private final ReentrantReadWriteLock lock; // write lock held while the slots are resized
+    private FileChannel channel;
+    private int slotSize;
+
+    public PageSegment(String segmentPath, int slotSize) throws IOException {
+        this.segmentPath = segmentPath;
+        this.lock = new ReentrantReadWriteLock();
+
+        boolean isNew = !new File(segmentPath).exists();
+        this.channel = FileChannel.open(Paths.get(segmentPath), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (isNew || channel.size() < HEADER_SIZE) {
+            this.slotSize = slotSize;
+            writeHeader(channel, slotSize);
+        } else
+            this.slotSize = readHeader();
+    }
+
+
+    public byte[] readPage(int pageIndex) throws IOException, DBNotFoundException {
+        lock.readLock().lock();
+        try {
+            long position = getSlotPosition(pageIndex);
+            if (position + SLOT_HEADER_SIZE > channel.size())
+                throw new DBNotFoundException("Page not found");
+
+            ByteBuffer slotHeader = ByteBuffer.allocate(SLOT_HEADER_SIZE);
+            readFully(channel, slotHeader, position);
+            int length = slotHeader.getInt(0);
+            if (length <= 0 || length > slotSize - SLOT_HEADER_SIZE)
+                throw new DBNotFoundException("Page not found");
+
+            ByteBuffer data = ByteBuffer.allocate(length);
+            readFully(channel, data, position + SLOT_HEADER_SIZE);
+            if (getChecksum(data.array()) != slotHeader.getInt(4))
+                throw new IOException("Corrupt page " + pageIndex + " in segment file " + segmentPath);
+            return data.array();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void writePage(int pageIndex, byte[] data) throws IOException {
+        if (data.length > slotSize - SLOT_HEADER_SIZE)
+            resize(data.length + SLOT_HEADER_SIZE);
+
+        lock.readLock().lock();
+        try {
+            ByteBuffer slot = ByteBuffer.allocate(SLOT_HEADER_SIZE + data.length);
+            slot.putInt(data.length);
+            slot.putInt(getChecksum(data));
+            slot.put(data);
+            slot.flip();
+            writeFully(channel, slot, getSlotPosition(pageIndex));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Waits until all written pages are on disk
+    public void sync() throws IOException {
+        lock.readLock().lock();
+        try {
+            channel.force(false);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            channel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int getSlotSize() {
+        return slotSize;
+    }
+
+
+    // Helper methods
+    private long getSlotPosition(int pageIndex) {
+        return HEADER_SIZE + (long) pageIndex * slotSize;
+    }
+
+    // Copies every slot to a new file with slots large enough for minSlotSize bytes, then replaces the file
+    private void resize(int minSlotSize) throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (minSlotSize <= slotSize) // resized by another thread meanwhile
+                return;
+
+            int newSlotSize = slotSize;
+            while (newSlotSize < minSlotSize)
+                newSlotSize *= 2;
+
+            String tempPath = segmentPath + ".tmp";
+            FileChannel newChannel = FileChannel.open(Paths.get(tempPath), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            writeHeader(newChannel, newSlotSize);
+
+            long slotsCount = (channel.size() - HEADER_SIZE + slotSize - 1) / slotSize;
+            ByteBuffer slot = ByteBuffer.allocate(slotSize);
+            for (long i = 0; i < slotsCount; i++) {
+                slot.clear();
+                long position = HEADER_SIZE + i * slotSize;
+                slot.limit((int) Math.min(slotSize, channel.size() - position));
+                readFully(channel, slot, position);
+                slot.flip();
+                writeFully(newChannel, slot, HEADER_SIZE + i * newSlotSize);
+            }
+            newChannel.force(true);
+            newChannel.close();
+            channel.close();
+
+            Files.move(Paths.get(tempPath), Paths.get(segmentPath), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel = FileChannel.open(Paths.get(segmentPath), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            slotSize = newSlotSize;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static int getChecksum(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+
+    private static void writeHeader(FileChannel channel, int slotSize) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(SEGMENT_MAGIC);
+        header.putShort(VERSION);
+        header.putInt(slotSize);
+        header.flip();
+        writeFully(channel, header, 0);
+    }
+
+    private int readHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header, 0);
+        if (header.getInt(0) != SEGMENT_MAGIC)
+            throw new IOException("Invalid segment file " + segmentPath);
+        if (header.getShort(4) != VERSION)
+            throw new IOException("Unsupported segment version " + header.getShort(4));
+        return header.getInt(6);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0)
+                throw new IOException("Unexpected end of segment file");
+            position += read;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining())
+            position += channel.write(buffer, position);
+    }
+}
@@ -0,0 +1,136 @@
+package query;
+
+import Page.Page;
+import Utils.SerializationManager;
+import Utils.Utils;
+import exceptions.DBNotFoundException;
+import model.Table;
+import model.Tuple;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.Lock;
+
+// Reads a range of pages on a ForkJoinPool and returns the tuples matching a predicate.
+// The range is split in halves until a task has few enough pages, every task reads and filters its own pages.
+// If the result is ordered the halves are concatenated so tuples keep their clusterKey order, otherwise
+// every task adds its tuples to the result as soon as it is done.
+// The number of threads is ParallelScanThreads in the config, the pool is shared by all scans.
+// Every page is read under its read latch since inserts may change it, the caller holds the read lock of the table.
+public class ParallelScan {
+    private static final int TASKS_PER_THREAD = 4; // a scan is split in about this many tasks per thread
+    private static ForkJoinPool pool;
+
+    public static boolean isEnabled() throws IOException {
+        return Utils.getParallelScanThreads() > 1;
+    }
+
+    public static int getThreadsCount() throws IOException {
+        return Utils.getParallelScanThreads();
+    }
+
+    // Scans the pages pageIndexes[from] to pageIndexes[to - 1]. A page whose generation is no longer the one in
+    // pageGenerations was removed since the page indexes were taken and is skipped, pageGenerations is null if
+    // the caller holds the write lock of the table
+    public static Vector<Tuple> scan(SerializationManager serializationManager, Table table, int[] pageIndexes, int[] pageGenerations,
+                                     int from, int to, Predicate predicate, boolean isOrdered) throws IOException {
+        int pagesPerTask = Math.max(1, (to - from) / (getThreadsCount() * TASKS_PER_THREAD));
+        Vector<Tuple> result = isOrdered ? null : new Vector<>();
+        ScanTask task = new ScanTask(serializationManager, table, pageIndexes, pageGenerations, from, to, predicate, pagesPerTask, result);
+
+        try {
+            Vector<Tuple> tuples = getPool().invoke(task);
+            return isOrdered ? tuples : result;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+
+    // Helper methods
+    private static synchronized ForkJoinPool getPool() throws IOException {
+        if (pool == null)
+            pool = new ForkJoinPool(getThreadsCount());
+        return pool;
+    }
+
+
+    private static class ScanTask extends RecursiveTask<Vector<Tuple>> {
+        private final SerializationManager serializationManager;
+        private final Table table;
+        private final int[] pageIndexes;
+        private final int[] pageGenerations;
+        private final int from;
+        private final int to;
+        private final Predicate predicate;
+        private final int pagesPerTask;
+        private final Vector<Tuple> result; // shared result of an unordered scan, null if the scan is ordered
+
+        private ScanTask(SerializationManager serializationManager, Table table, int[] pageIndexes, int[] pageGenerations,
+                         int from, int to, Predicate predicate, int pagesPerTask, Vector<Tuple> result) {
+            this.serializationManager = serializationManager;
+            this.table = table;
+            this.pageIndexes = pageIndexes;
+            this.pageGenerations = pageGenerations;
+            this.from = from;
+            this.to = to;
+            this.predicate = predicate;
+            this.pagesPerTask = pagesPerTask;
+            this.result = result;
+        }
+
+        protected Vector<Tuple> compute() {
+            if (to - from > pagesPerTask) {
+                int mid = (from + to) >>> 1;
+                ScanTask left = new ScanTask(serializationManager, table, pageIndexes, pageGenerations, from, mid, predicate, pagesPerTask, result);
+                ScanTask right = new ScanTask(serializationManager, table, pageIndexes, pageGenerations, mid, to, predicate, pagesPerTask, result);
+                left.fork();
+                Vector<Tuple> rightTuples = right.compute();
+                Vector<Tuple> leftTuples = left.join();
+                if (result != null)
+                    return null;
+
+                leftTuples.addAll(rightTuples);
+                return leftTuples;
+            }
+
+            Vector<Tuple> tuples = new Vector<>();
+            for (int i = from; i < to; i++) {
+                if (pageGenerations != null && table.getPageGeneration(pageIndexes[i]) != pageGenerations[i])
+                    continue;
+                Page page = readPage(pageIndexes[i]);
+                if (page == null)
+                    continue;
+
+                Lock latch = table.getPageLatch(pageIndexes[i]).readLock();
+                latch.lock();
+                try {
+                    for (Comparable tuple : page.getTuples())
+                        if (predicate.evaluate((Tuple) tuple))
+                            tuples.add((Tuple) tuple);
+                } finally {
+                    latch.unlock();
+                }
+            }
+
+            if (result == null)
+                return tuples;
+            result.addAll(tuples);
+            return null;
+        }
+
+        // Returns null if the slot of the page is empty
+        private Page readPage(int pageIndex) {
+            try {
+                return serializationManager.deserializePage(table.getTableName(), pageIndex);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (DBNotFoundException e) {
+                return null;
+            }
+        }
+    }
+}
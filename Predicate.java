@@ -0,0 +1,48 @@
+package query;
+
+import model.SQLTerm;
+import model.Tuple;
+
+import java.util.Vector;
+
+// Condition of a select statement, built from SQLTerms joined with AND, OR and XOR.
+// AND binds tighter than XOR and XOR binds tighter than OR.
+public abstract class Predicate {
+
+    public abstract boolean evaluate(Tuple tuple);
+
+
+    public static Predicate build(SQLTerm[] arrSQLTerms, String[] strarrOperators) {
+        Vector<Predicate> orOperands = new Vector<>();
+        Vector<Predicate> xorOperands = new Vector<>();
+        Predicate andPredicate = new TermPredicate(arrSQLTerms[0]);
+
+        for (int i = 0; i < strarrOperators.length; i++) {
+            Predicate next = new TermPredicate(arrSQLTerms[i + 1]);
+            String operator = strarrOperators[i].toUpperCase();
+
+            if (operator.equals(LogicalPredicate.AND)) {
+                andPredicate = new LogicalPredicate(LogicalPredicate.AND, andPredicate, next);
+                continue;
+            }
+
+            xorOperands.add(andPredicate);
+            if (operator.equals(LogicalPredicate.OR)) {
+                orOperands.add(join(LogicalPredicate.XOR, xorOperands));
+                xorOperands.clear();
+            }
+            andPredicate = next;
+        }
+        xorOperands.add(andPredicate);
+        orOperands.add(join(LogicalPredicate.XOR, xorOperands));
+
+        return join(LogicalPredicate.OR, orOperands);
+    }
+
+    private static Predicate join(String operator, Vector<Predicate> operands) {
+        Predicate predicate = operands.get(0);
+        for (int i = 1; i < operands.size(); i++)
+            predicate = new LogicalPredicate(operator, predicate, operands.get(i));
+        return predicate;
+    }
+}
@@ -0,0 +1,211 @@
+package query;
+
+import index.BPlusTree;
+import index.Index;
+import index.IndexEntry;
+import index.Octree;
+import model.Table;
+import model.TableSchema;
+
+import java.util.Vector;
+import java.util.TreeSet;
+
+// Chooses the pages a select has to read. Every term is answered by the cheapest access path available:
+// a binary search over the page references for the clustering key, a B+ tree or an Octree index for the
+// other columns, or the zone maps of the page references when the column has no index.
+public class QueryPlanner {
+    private final Table table;
+    private final TableSchema schema;
+    private final Vector<Index> indexes;
+
+    public QueryPlanner(Table table, TableSchema schema, Vector<Index> indexes) {
+        this.table = table;
+        this.schema = schema;
+        this.indexes = indexes;
+    }
+
+
+    // returns positions of the pages that may hold matching tuples in ascending order, null if all pages have to be read
+    public TreeSet<Integer> getPagePositions(Predicate predicate) {
+        if (predicate instanceof TermPredicate)
+            return getTermPages((TermPredicate) predicate);
+
+        LogicalPredicate logicalPredicate = (LogicalPredicate) predicate;
+        if (logicalPredicate.getOperator().equals(LogicalPredicate.AND))
+            return getAndPages(logicalPredicate.getOperands());
+
+        // OR, XOR: a matching tuple matches at least one of the operands
+        TreeSet<Integer> positions = new TreeSet<>();
+        for (Predicate operand : logicalPredicate.getOperands()) {
+            TreeSet<Integer> operandPositions = getPagePositions(operand);
+            if (operandPositions == null)
+                return null;
+            positions.addAll(operandPositions);
+        }
+        return positions;
+    }
+
+
+    // Helper methods
+    // A matching tuple matches all the operands, so the pages of every operand are intersected.
+    // The clustering key only needs a binary search so it is planned first, indexes are searched
+    // only if the pages are not already narrowed down to one, then the zone maps narrow down the rest.
+    private TreeSet<Integer> getAndPages(Vector<Predicate> operands) {
+        TreeSet<Integer> positions = null;
+        Vector<TermPredicate> terms = new Vector<>();
+        Vector<Predicate> others = new Vector<>();
+        for (Predicate operand : operands) {
+            if (!(operand instanceof TermPredicate))
+                others.add(operand);
+            else if (((TermPredicate) operand).getColName().equals(schema.getClusterKeyName()))
+                positions = intersect(positions, getClusterKeyPages((TermPredicate) operand));
+            else
+                terms.add((TermPredicate) operand);
+        }
+
+        for (Index index : indexes) {
+            if (positions != null && positions.size() <= 1)
+                return positions;
+
+            if (index instanceof Octree)
+                positions = intersect(positions, getOctreePages((Octree) index, terms));
+            else
+                for (TermPredicate term : terms)
+                    if (term.getColName().equals(index.getColumnNames()[0]))
+                        positions = intersect(positions, getBPlusTreePages((BPlusTree) index, term));
+        }
+
+        for (TermPredicate term : terms) {
+            if (positions != null && positions.size() <= 1)
+                return positions;
+            positions = intersect(positions, getZoneMapPages(term));
+        }
+
+        for (Predicate operand : others)
+            positions = intersect(positions, getPagePositions(operand));
+
+        return positions;
+    }
+
+    private TreeSet<Integer> getTermPages(TermPredicate term) {
+        if (term.getColName().equals(schema.getClusterKeyName()))
+            return getClusterKeyPages(term);
+
+        for (Index index : indexes)
+            if (index instanceof BPlusTree && term.getColName().equals(index.getColumnNames()[0]))
+                return getBPlusTreePages((BPlusTree) index, term);
+
+        return getZoneMapPages(term);
+    }
+
+    // Binary search over the page references using their min and max
+    private TreeSet<Integer> getClusterKeyPages(TermPredicate term) {
+        int pagesCount = table.getPagesCount();
+        Comparable value = term.getValue();
+        int position = table.getPagePosition(value); // page holding value or where it would be inserted
+
+        switch (term.getOperator()) {
+            case "=":
+                TreeSet<Integer> positions = new TreeSet<>();
+                if (position < pagesCount && table.getPageReference(position).compareTo(value) == 0)
+                    positions.add(position);
+                return positions;
+            case ">":
+            case ">=":
+                return getRange(position, pagesCount - 1);
+            case "<":
+            case "<=":
+                return getRange(0, Math.min(position, pagesCount - 1));
+            default: // != matches almost every page
+                return null;
+        }
+    }
+
+    private TreeSet<Integer> getBPlusTreePages(BPlusTree index, TermPredicate term) {
+        Comparable value = term.getValue();
+        switch (term.getOperator()) {
+            case "=":
+                return getEntriesPages(index.search(value));
+            case ">":
+                return getEntriesPages(index.search(value, false, null, false));
+            case ">=":
+                return getEntriesPages(index.search(value, true, null, false));
+            case "<":
+                return getEntriesPages(index.search(null, false, value, false));
+            case "<=":
+                return getEntriesPages(index.search(null, false, value, true));
+            default:
+                return null;
+        }
+    }
+
+    // The Octree is used only if every one of its three columns has a term
+    private TreeSet<Integer> getOctreePages(Octree index, Vector<TermPredicate> terms) {
+        String[] colNames = index.getColumnNames();
+        Comparable[] mins = new Comparable[colNames.length];
+        Comparable[] maxs = new Comparable[colNames.length];
+        boolean[] minInclusive = new boolean[colNames.length];
+        boolean[] maxInclusive = new boolean[colNames.length];
+        boolean[] hasTerm = new boolean[colNames.length];
+
+        for (int i = 0; i < colNames.length; i++)
+            for (TermPredicate term : terms) {
+                if (!term.getColName().equals(colNames[i]) || term.getOperator().equals("!="))
+                    continue;
+
+                String operator = term.getOperator();
+                if (operator.equals("=") || operator.startsWith(">")) {
+                    mins[i] = term.getValue();
+                    minInclusive[i] = !operator.equals(">");
+                }
+                if (operator.equals("=") || operator.startsWith("<")) {
+                    maxs[i] = term.getValue();
+                    maxInclusive[i] = !operator.equals("<");
+                }
+                hasTerm[i] = true;
+                break;
+            }
+
+        for (boolean b : hasTerm)
+            if (!b)
+                return null;
+        return getEntriesPages(index.search(mins, minInclusive, maxs, maxInclusive));
+    }
+
+    // Pages whose min and max of the column show they can not have a matching tuple are skipped
+    private TreeSet<Integer> getZoneMapPages(TermPredicate term) {
+        TreeSet<Integer> positions = new TreeSet<>();
+        for (int i = 0; i < table.getPagesCount(); i++)
+            if (table.getPageReference(i).mayContain(term.getColName(), term.getOperator(), term.getValue()))
+                positions.add(i);
+        return positions;
+    }
+
+    private TreeSet<Integer> getEntriesPages(Vector<IndexEntry> entries) {
+        TreeSet<Integer> positions = new TreeSet<>();
+        for (IndexEntry entry : entries) {
+            int position = table.getPagePosition((Comparable) entry.getClusterKeyValue());
+            if (position < table.getPagesCount())
+                positions.add(position);
+        }
+        return positions;
+    }
+
+    private static TreeSet<Integer> getRange(int from, int to) {
+        TreeSet<Integer> positions = new TreeSet<>();
+        for (int i = from; i <= to; i++)
+            positions.add(i);
+        return positions;
+    }
+
+    // null means all pages
+    private static TreeSet<Integer> intersect(TreeSet<Integer> positions, TreeSet<Integer> otherPositions) {
+        if (positions == null)
+            return otherPositions;
+        if (otherPositions == null)
+            return positions;
+
+        positions.retainAll(otherPositions);
+        return positions;
+    }
+}
@@ -0,0 +1,146 @@
+package query;
+
+import Page.Page;
+import Utils.SerializationManager;
+import exceptions.DBNotFoundException;
+import model.Table;
+import model.Tuple;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Vector;
+import java.util.concurrent.locks.Lock;
+
+// Iterator over the tuples matching a predicate. Pages are read one at a time only when the consumer
+// pulls past the end of the current page, and the predicate is evaluated while pulling, so the result
+// is never held in memory and a consumer that stops early does not read the remaining pages.
+// If parallel scans are enabled the pages are read in batches of one page per scan thread instead,
+// the tuples of a batch are already filtered and keep their clusterKey order.
+// The pages to read are fixed when the iterator is created. The table may change while iterating, every page is read
+// under the read lock of the table and the read latch of the page and its tuples are copied, so a page is seen either
+// before or after a change to it. A page removed meanwhile is skipped, even if a new page reuses its pageIndex,
+// and a tuple moved to a page not read yet is not returned again, so tuples always come in increasing clusterKey order.
+// If tuples were shifted back to a page already read, the pages after the last evaluated tuple are found again and
+// all read, since the pages skipped when the iterator was created may have received matching tuples.
+public class ResultIterator implements Iterator<Tuple> {
+    private final SerializationManager serializationManager;
+    private final Table table;
+    private int[] pageIndexes; // file ids of the pages to read, in clusterKey order
+    private int[] pageGenerations; // generation of each page when the iterator was created, see Table.getPageGeneration
+    private final Predicate predicate;
+    private final int batchSize; // number of pages read at once, 1 if parallel scans are disabled
+
+    private int nextPage; // position in pageIndexes of the next page to read
+    private Vector<? extends Comparable> tuples; // tuples of the current page or batch
+    private boolean isFiltered; // true if tuples only holds matching tuples
+    private int nextTuple; // position in tuples of the next tuple to evaluate
+    private Tuple next; // next matching tuple, null if not found yet
+    private Comparable lastClusterKey; // clusterKey of the last evaluated tuple
+    private int backwardShifts; // Table.getBackwardShifts when the pages to read were found
+
+    public ResultIterator(SerializationManager serializationManager, Table table, int[] pageIndexes, int[] pageGenerations,
+                          Predicate predicate) throws IOException {
+        this.serializationManager = serializationManager;
+        this.table = table;
+        this.pageIndexes = pageIndexes;
+        this.pageGenerations = pageGenerations;
+        this.predicate = predicate;
+        this.batchSize = ParallelScan.isEnabled() ? ParallelScan.getThreadsCount() : 1;
+        this.backwardShifts = table.getBackwardShifts(); // created under the read lock, with the pages to read
+    }
+
+
+    public boolean hasNext() {
+        while (next == null) {
+            if (tuples == null || nextTuple >= tuples.size()) {
+                if (nextPage >= pageIndexes.length)
+                    return false;
+                readNext();
+                nextTuple = 0;
+                continue;
+            }
+
+            Tuple tuple = (Tuple) tuples.get(nextTuple++);
+            Comparable clusterKey = (Comparable) tuple.getClusterKeyValue();
+            if (lastClusterKey != null && clusterKey.compareTo(lastClusterKey) <= 0)
+                continue; // moved by an insert from a page already read to the next page
+            lastClusterKey = clusterKey;
+            if (isFiltered || predicate.evaluate(tuple))
+                next = tuple;
+        }
+        return true;
+    }
+
+    public Tuple next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+
+        Tuple tuple = next;
+        next = null;
+        return tuple;
+    }
+
+
+    // Helper methods
+    // Reads the next page or batch of pages. Pages are released to the buffer pool right away,
+    // only a copy of their tuples is kept until the next page is read
+    private void readNext() {
+        Lock readLock = table.getLock().readLock();
+        readLock.lock();
+        try {
+            if (table.getBackwardShifts() != backwardShifts) {
+                findPagesAfter();
+                tuples = null;
+                return;
+            }
+
+            if (batchSize > 1) {
+                int to = Math.min(pageIndexes.length, nextPage + batchSize);
+                table.getMetrics().recordPagesScanned(to - nextPage);
+                tuples = ParallelScan.scan(serializationManager, table, pageIndexes, pageGenerations, nextPage, to, predicate, true);
+                isFiltered = true;
+                nextPage = to;
+                return;
+            }
+
+            int pageIndex = pageIndexes[nextPage];
+            if (table.getPageGeneration(pageIndex) != pageGenerations[nextPage++]) {
+                tuples = null; // removed by a delete since the iterator was created, the pageIndex may hold another page now
+                return;
+            }
+            table.getMetrics().recordPagesScanned(1);
+            Page page = serializationManager.deserializePage(table.getTableName(), pageIndex);
+            Lock latch = table.getPageLatch(pageIndex).readLock();
+            latch.lock();
+            try {
+                tuples = new Vector<>(page.getTuples());
+            } finally {
+                latch.unlock();
+            }
+            isFiltered = false;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (DBNotFoundException e) {
+            tuples = null; // removed by a delete since the iterator was created
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // Replaces the pages left to read with all pages that may hold tuples after the last evaluated one,
+    // called under the read lock
+    private void findPagesAfter() {
+        backwardShifts = table.getBackwardShifts();
+
+        int from = lastClusterKey == null ? 0 : Math.min(table.getPagePosition(lastClusterKey), table.getPagesCount());
+        pageIndexes = new int[table.getPagesCount() - from];
+        pageGenerations = new int[pageIndexes.length];
+        for (int i = 0; i < pageIndexes.length; i++) {
+            pageIndexes[i] = table.getPageReference(from + i).getPageIndex();
+            pageGenerations[i] = table.getPageGeneration(pageIndexes[i]);
+        }
+        nextPage = 0;
+    }
+}
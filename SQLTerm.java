@@ -3,10 +3,13 @@ package model;
 public class SQLTerm {
 
     // Should be private and accessed through getters and setters but for the example's sake we will leave it like this
-    String _strTableName;
-    String _strColumnName;
-    String _strOperator;
-    Object _objValue;
+    public String _strTableName;
+    public String _strColumnName;
+    public String _strOperator;
+    public Object _objValue;
+
+    public SQLTerm() {
+    }
 
     public SQLTerm(String strTableName, String strColumnName, String strOperator, Object objValue) {
         this._strTableName = strTableName;
@@ -15,4 +18,20 @@ public class SQLTerm {
         this._objValue = objValue;
     }
 
+    public String getTableName() {
+        return _strTableName;
+    }
+
+    public String getColumnName() {
+        return _strColumnName;
+    }
+
+    public String getOperator() {
+        return _strOperator;
+    }
+
+    public Object getValue() {
+        return _objValue;
+    }
+
 }
@@ -1,86 +1,658 @@
 package Utils;
 
 import Page.Page;
+import Page.PageReference;
+import exceptions.DBAppException;
 import exceptions.DBNotFoundException;
+import index.BPlusTree;
+import index.Index;
+import index.Octree;
 import model.Table;
+import model.TableSchema;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
 
 public class SerializationManager {
-    private final String TABLES_DATA_FOLDER = "src/main/resources/Tables/";
-    private final String PAGES_Table_FOLDER = "Pages/";
+    private final String TABLES_DATA_FOLDER; // Tables folder inside the data folder
+    private final String INDEXES_Table_FOLDER = "Indexes/";
+    private final String SEGMENT_FILE_EXTENSION = ".pages";
+    private final String INDEX_FILE_EXTENSION = ".index";
+    private final String WRITE_AHEAD_LOG_FILE = "wal.log";
+    private final String CHECKPOINT_FILE = "checkpoint";
+    private final String CHECKPOINT_TEMP_FILE = "checkpoint.tmp";
+    private final byte CHECKPOINT_PAGE = 0;
+    private final byte CHECKPOINT_FILE_ENTRY = 1;
+    private final BufferPool bufferPool;
+    private final MetaDataManager metaDataManager;
+    private final ConcurrentHashMap<String, Index> htblIndex; // loaded indexes, key is tableName/indexName
+    private final HashSet<String> dirtyIndexes; // keys of indexes changed since they were last written
+    private final HashSet<String> staleTables; // names of tables whose file was written with the stale indexes flag set
+    private final ConcurrentHashMap<String, Table> htblTable; // loaded tables
+    private final HashSet<String> dirtyTables; // names of tables changed since the last checkpoint
+    private final HashSet<String> removedPages; // tableName/pageIndex of pages removed since the last checkpoint, their slots are emptied by it
+    private final Hashtable<String, PageSegment> htblSegment; // open page segments, one per table
+    private final WriteAheadLog writeAheadLog; // null if WriteAheadLogEnabled is false in the config
+    private final Object checkpointRunLock; // held by the thread taking a checkpoint, one checkpoint at a time
 
-    // Delete all tables files and create a new folder
-    public SerializationManager() throws IOException {
+    // Opens the Tables folder as it was left, tables, indexes and pages are only read on first use
+    public SerializationManager(MetaDataManager metaDataManager) throws IOException {
+        this.metaDataManager = metaDataManager;
+        this.TABLES_DATA_FOLDER = Utils.getTablesFolderPath();
+        this.htblIndex = new ConcurrentHashMap<>();
+        this.dirtyIndexes = new HashSet<>();
+        this.staleTables = new HashSet<>();
+        this.htblTable = new ConcurrentHashMap<>();
+        this.dirtyTables = new HashSet<>();
+        this.removedPages = new HashSet<>();
+        this.htblSegment = new Hashtable<>();
+        this.checkpointRunLock = new Object();
+        bufferPool = new BufferPool(Utils.getBufferPoolSize(), this);
         File TablesFolder = new File(TABLES_DATA_FOLDER);
 
-        if (TablesFolder.exists())
-            Utils.deleteFolder(TablesFolder);
-
-        if (!TablesFolder.mkdirs())
+        if (!TablesFolder.exists() && !TablesFolder.mkdirs())
             throw new IOException("Failed to create Tables folder");
+
+        // With the log, files on disk only change at checkpoints so dirty pages must not be evicted
+        if (Utils.isWriteAheadLogEnabled()) {
+            writeAheadLog = new WriteAheadLog(TABLES_DATA_FOLDER + WRITE_AHEAD_LOG_FILE);
+            bufferPool.setNoSteal(true);
+        } else
+            writeAheadLog = null;
     }
 
 
-    public void serializeTable(Table table) throws IOException {
+    // Tables are kept in memory once loaded, with the log they are only written by checkpoints.
+    // Without the log the table file is written right away but its indexes only by flush, so the file tells
+    // whether its indexes have changes not written yet, they are built again from the pages if it is read so
+    public synchronized void serializeTable(Table table) throws IOException, DBNotFoundException {
         String tableName = table.getTableName();
-        String tablePath = TABLES_DATA_FOLDER + tableName + "/" + tableName + ".ser";
+        table.setSerializationManager(this);
+        htblTable.put(tableName, table);
+        if (writeAheadLog != null) {
+            dirtyTables.add(tableName);
+            return;
+        }
+
+        boolean hasStaleIndexes = hasDirtyIndexes(tableName);
+        byte[] data = PageFormat.encodeTable(table, getTableSchema(tableName), hasStaleIndexes);
+        writeBytes(data, getTablePath(tableName));
+        DBAppMetrics.forTable(tableName).recordTableWrite(data.length);
+        if (hasStaleIndexes)
+            staleTables.add(tableName);
+        else
+            staleTables.remove(tableName);
+    }
 
-        serialize(table, tablePath);
+    // Writes the file of a new table and waits until it is on disk. DBApp adds the table to the manifest only after,
+    // so a table in the manifest always has its file, with or without the log
+    public synchronized void createTable(Table table) throws IOException, DBNotFoundException {
+        String tableName = table.getTableName();
+        table.setSerializationManager(this);
+        htblTable.put(tableName, table);
+
+        byte[] data = PageFormat.encodeTable(table, getTableSchema(tableName), false);
+        FileOutputStream fileOut = new FileOutputStream(getTablePath(tableName));
+        try {
+            fileOut.write(data);
+            fileOut.getFD().sync();
+        } finally {
+            fileOut.close();
+        }
+        Utils.syncFolder(Utils.getTableFolderPath(tableName));
+        Utils.syncFolder(TABLES_DATA_FOLDER);
+        DBAppMetrics.forTable(tableName).recordTableWrite(data.length);
     }
 
+    // Loaded tables are returned without locking, so readers do not wait for a checkpoint
     public Table deserializeTable(String strTableName, SerializationManager serializationManager) throws IOException, DBNotFoundException {
-        String tablePath = TABLES_DATA_FOLDER + strTableName + "/" + strTableName + ".ser";
+        Table table = htblTable.get(strTableName);
+        if (table != null)
+            return table;
 
-        Table table = (Table) deserialize(tablePath);
-        table.setSerializationManager(serializationManager);
-        return table;
+        return loadTable(strTableName, serializationManager);
     }
 
+    // Pages go through the buffer pool, the page file is only written when the page is evicted or flushed
     public void serializePage(Page page) throws IOException {
-        String tableName = page.getTableName();
-        int pageIndex = page.getPageIndex();
-        String PagePath = TABLES_DATA_FOLDER + tableName + "/" + PAGES_Table_FOLDER + pageIndex + ".ser";
-
-        serialize(page, PagePath);
+        synchronized (removedPages) { // the slot is reused, the checkpoint writes the new page instead of emptying it
+            removedPages.remove(page.getTableName() + "/" + page.getPageIndex());
+        }
+        bufferPool.putPage(page);
     }
 
     public Page deserializePage(String strTableName, int pageIndex) throws IOException, DBNotFoundException {
-        String PagePath = TABLES_DATA_FOLDER + strTableName + "/" + PAGES_Table_FOLDER + pageIndex + ".ser";
+        Page page = bufferPool.fetchPage(strTableName, pageIndex);
+        bufferPool.unpinPage(page, false);
+        return page;
+    }
+
+    // Same as deserializePage but the page can not be evicted until unpinPage is called
+    public Page pinPage(String strTableName, int pageIndex) throws IOException, DBNotFoundException {
+        return bufferPool.fetchPage(strTableName, pageIndex);
+    }
+
+    public void unpinPage(Page page, boolean isDirty) {
+        bufferPool.unpinPage(page, isDirty);
+    }
+
+    // Empties the slot of the page so reading it throws DBNotFoundException, the table reuses its pageIndex
+    // for the next new page. With the log the slot is emptied by the next checkpoint, since files on disk
+    // must keep the pages of the last checkpoint until then
+    public void deletePage(String strTableName, int pageIndex) throws IOException {
+        bufferPool.removePage(strTableName, pageIndex);
+        if (writeAheadLog != null) {
+            synchronized (removedPages) {
+                removedPages.add(strTableName + "/" + pageIndex);
+            }
+            return;
+        }
+
+        getSegment(strTableName).writePage(pageIndex, new byte[0]);
+    }
+
+    // Indexes are kept in memory once loaded, like pages they are only written when flushed or checkpointed
+    public synchronized void serializeIndex(String strTableName, Index index) {
+        String key = strTableName + "/" + index.getIndexName();
+        htblIndex.put(key, index);
+        dirtyIndexes.add(key);
+    }
+
+    public Index deserializeIndex(String strTableName, String indexName) throws IOException, DBNotFoundException {
+        Index index = htblIndex.get(strTableName + "/" + indexName);
+        if (index != null)
+            return index;
+
+        return loadIndex(strTableName, indexName);
+    }
+
+    // returns all indexes of the table as listed in its metadata
+    public Vector<Index> getIndexes(String strTableName) throws IOException, DBNotFoundException {
+        TableSchema schema = getTableSchema(strTableName);
+        Vector<Index> indexes = new Vector<>();
+        HashSet<String> indexNames = new HashSet<>();
+        for (int i = 0; i < schema.getColumnsCount(); i++)
+            if (schema.hasIndex(i) && indexNames.add(schema.getIndexName(i)))
+                indexes.add(deserializeIndex(strTableName, schema.getIndexName(i)));
+
+        return indexes;
+    }
+
+    // Writes all dirty pages and indexes to disk
+    public void flush() throws IOException {
+        if (writeAheadLog != null) {
+            checkpoint();
+            return;
+        }
+
+        bufferPool.flushAll();
+        flushIndexes(null);
+        writeStaleTables(null);
+    }
 
-        Page page = (Page) deserialize(PagePath);
+    public void flushTable(String strTableName) throws IOException {
+        if (writeAheadLog != null) {
+            checkpoint();
+            return;
+        }
+
+        bufferPool.flushTable(strTableName);
+        flushIndexes(strTableName);
+        writeStaleTables(strTableName);
+    }
+
+    // Logs an operation before it is done, does nothing if the log is disabled
+    public void log(byte type, String strTableName, Vector<Hashtable<String, Object>> rows) throws IOException {
+        if (writeAheadLog != null)
+            writeAheadLog.log(type, strTableName, rows);
+    }
+
+    // true if the log grew past CheckpointLogSize or dirty pages made the buffer pool grow past its capacity
+    public boolean needsCheckpoint() throws IOException {
+        return writeAheadLog != null && (writeAheadLog.getSize() >= Utils.getCheckpointLogSize() || bufferPool.isOverCapacity());
+    }
+
+    // Takes a checkpoint, must be called between operations, never while a table is changing
+    public void checkpoint() throws IOException {
+        if (writeAheadLog == null) {
+            flush();
+            return;
+        }
+
+        synchronized (checkpointRunLock) {
+            finishCheckpoint(beginCheckpoint());
+        }
+    }
+
+    // Takes a checkpoint while operations go on: operationsLock is held by operations changing tables, it is only
+    // locked while the dirty pages, tables and indexes are encoded and a new log file is started. Writing and
+    // installing them is done after it is unlocked
+    public void checkpoint(Lock operationsLock) throws IOException {
+        synchronized (checkpointRunLock) {
+            Checkpoint checkpoint;
+            operationsLock.lock();
+            try {
+                if (writeAheadLog == null) {
+                    flush();
+                    return;
+                }
+                checkpoint = beginCheckpoint();
+            } finally {
+                operationsLock.unlock();
+            }
+            finishCheckpoint(checkpoint);
+        }
+    }
+
+    // Installs a checkpoint interrupted by a crash and returns the operations logged since the last checkpoint,
+    // so that they are done again on top of the pages and files of that checkpoint
+    public synchronized Vector<WriteAheadLog.LogRecord> recover() throws IOException {
+        Vector<WriteAheadLog.LogRecord> records = new Vector<>();
+        if (writeAheadLog == null)
+            return records;
+
+        File tempFile = new File(TABLES_DATA_FOLDER + CHECKPOINT_TEMP_FILE);
+        if (tempFile.exists()) // the checkpoint was not complete, the log still has its operations
+            Utils.deleteFolder(tempFile);
+        installCheckpoint();
+        return writeAheadLog.readAll();
+    }
+
+
+    // Disk access used by the buffer pool only
+    Page readPage(String strTableName, int pageIndex) throws IOException, DBNotFoundException {
+        long start = System.nanoTime();
+        byte[] compressed = getSegment(strTableName).readPage(pageIndex);
+        byte[] data = PageCodec.decode(compressed);
+
+        Table table = htblTable.get(strTableName);
+        PageReference pageReference = table == null ? null : table.getPageReferenceByIndex(pageIndex);
+        Page page = PageFormat.decodePage(data, strTableName, pageIndex, getTableSchema(strTableName), pageReference);
+        DBAppMetrics.forTable(strTableName).recordPageRead(System.nanoTime() - start, compressed.length, data.length);
         return page;
     }
 
+    void writePage(Page page) throws IOException {
+        String tableName = page.getTableName();
+
+        try {
+            long start = System.nanoTime();
+            byte[] data = PageFormat.encodePage(page, getTableSchema(tableName));
+            byte[] compressed = compressPage(tableName, data);
+            getSegment(tableName).writePage(page.getPageIndex(), compressed);
+            DBAppMetrics.forTable(tableName).recordPageWrite(System.nanoTime() - start, data.length, compressed.length);
+        } catch (DBNotFoundException e) {
+            throw new IOException("Table MetaData does not exist for " + tableName);
+        }
+    }
+
 
     // Helper methods
-    private void serialize(Object obj, String filePath) throws IOException {
-        FileOutputStream fileOut = new FileOutputStream(filePath);
-        ObjectOutputStream out = new ObjectOutputStream(fileOut);
+    private synchronized Table loadTable(String strTableName, SerializationManager serializationManager) throws IOException, DBNotFoundException {
+        Table table = htblTable.get(strTableName);
+        if (table != null) // loaded by another thread meanwhile
+            return table;
 
-        out.writeObject(obj);
+        TableSchema schema = getTableSchema(strTableName);
+        byte[] data = readBytes(getTablePath(strTableName));
+        table = PageFormat.decodeTable(data, schema);
+        DBAppMetrics.forTable(strTableName).recordTableRead(data.length);
+        table.setSerializationManager(serializationManager);
+        if (!PageFormat.hasStaleIndexes(data, schema) && hasIndexFiles(schema)) {
+            htblTable.put(strTableName, table);
+            return table;
+        }
 
-        out.close();
-        fileOut.close();
+        // other threads wait for the indexes on the lock of the table, the table must be loaded to read its pages
+        table.getLock().writeLock().lock();
+        try {
+            htblTable.put(strTableName, table);
+            rebuildIndexes(table, schema);
+        } finally {
+            table.getLock().writeLock().unlock();
+        }
+        return table;
+    }
 
-        System.out.println("Serialized data is saved successfully at " + filePath);
+    private synchronized Index loadIndex(String strTableName, String indexName) throws IOException, DBNotFoundException {
+        String key = strTableName + "/" + indexName;
+        Index index = htblIndex.get(key);
+        if (index == null) {
+            TableSchema schema = getTableSchema(strTableName);
+            index = newIndex(schema, indexName);
+            PageFormat.decodeIndex(readBytes(getIndexPath(strTableName, indexName)), index, schema);
+            htblIndex.put(key, index);
+        }
+        return index;
+    }
+
+    // Builds the indexes of the table again from the pages on disk, when the index files may miss some of their
+    // changes, Example: the application exited without flush while the log is disabled
+    private void rebuildIndexes(Table table, TableSchema schema) throws IOException, DBNotFoundException {
+        String tableName = table.getTableName();
+        try {
+            for (String indexName : getIndexNames(schema))
+                table.buildIndex(newIndex(schema, indexName));
+        } catch (DBNotFoundException e) {
+            throw e;
+        } catch (DBAppException e) {
+            throw new IOException("Failed to build the indexes of " + tableName, e);
+        }
+
+        if (writeAheadLog != null) {
+            dirtyTables.add(tableName); // the next checkpoint writes the table and its indexes
+            return;
+        }
+        flushIndexes(tableName);
+        serializeTable(table);
+    }
+
+    // An empty index with the name, type and columns of the index in the metadata
+    private Index newIndex(TableSchema schema, String indexName) throws IOException, DBNotFoundException {
+        Vector<String> colNames = new Vector<>();
+        String indexType = null;
+        for (int i = 0; i < schema.getColumnsCount(); i++)
+            if (schema.hasIndex(i) && schema.getIndexName(i).equals(indexName)) {
+                colNames.add(schema.getColumnName(i));
+                indexType = schema.getIndexType(i);
+            }
+
+        if (BPlusTree.INDEX_TYPE.equals(indexType) && colNames.size() == 1)
+            return new BPlusTree(indexName, colNames.get(0), Utils.getBPlusTreeOrder());
+        if (Octree.INDEX_TYPE.equals(indexType) && colNames.size() == 3) {
+            Comparable[] mins = new Comparable[3];
+            Comparable[] maxs = new Comparable[3];
+            for (int i = 0; i < 3; i++) {
+                mins[i] = schema.getMin(schema.getColumnIndex(colNames.get(i)));
+                maxs[i] = schema.getMax(schema.getColumnIndex(colNames.get(i)));
+            }
+            return new Octree(indexName, colNames.toArray(new String[0]), mins, maxs, Utils.getOctreeNodeCapacity());
+        }
+        throw new DBNotFoundException("Index not found");
     }
 
-    private Object deserialize(String filePath) throws IOException, DBNotFoundException {
-        FileInputStream fileIn = new FileInputStream(filePath);
-        ObjectInputStream in = new ObjectInputStream(fileIn);
+    private Vector<String> getIndexNames(TableSchema schema) {
+        Vector<String> indexNames = new Vector<>();
+        for (int i = 0; i < schema.getColumnsCount(); i++)
+            if (schema.hasIndex(i) && !indexNames.contains(schema.getIndexName(i)))
+                indexNames.add(schema.getIndexName(i));
+        return indexNames;
+    }
 
-        Object obj;
+    private boolean hasIndexFiles(TableSchema schema) {
+        for (String indexName : getIndexNames(schema))
+            if (!new File(getIndexPath(schema.getTableName(), indexName)).exists())
+                return false;
+        return true;
+    }
+
+    private boolean hasDirtyIndexes(String strTableName) {
+        for (String key : dirtyIndexes)
+            if (key.startsWith(strTableName + "/"))
+                return true;
+        return false;
+    }
+
+    // Writes again the files of the tables written with the stale indexes flag once their indexes are written,
+    // of all tables if strTableName is null
+    private synchronized void writeStaleTables(String strTableName) throws IOException {
         try {
-            obj = (Object) in.readObject();
-        } catch (Exception e) {
-            throw new DBNotFoundException("Table not found");
+            for (String tableName : new Vector<>(staleTables))
+                if (strTableName == null || strTableName.equals(tableName))
+                    serializeTable(htblTable.get(tableName));
+        } catch (DBNotFoundException e) {
+            throw new IOException("Table MetaData does not exist", e);
         }
+    }
+
+    // writes dirty indexes of the table, or of all tables if strTableName is null. The whole file of each
+    // dirty index is written again, one changed entry costs a write of all its entries, see BPlusTree
+    private synchronized void flushIndexes(String strTableName) throws IOException {
+        Vector<String> written = new Vector<>();
+        for (String key : dirtyIndexes) {
+            String tableName = key.substring(0, key.indexOf('/'));
+            if (strTableName != null && !strTableName.equals(tableName))
+                continue;
+
+            Index index = htblIndex.get(key);
+            Utils.createFolder(TABLES_DATA_FOLDER + tableName + "/" + INDEXES_Table_FOLDER);
+            try {
+                writeBytes(PageFormat.encodeIndex(index, getTableSchema(tableName)), getIndexPath(tableName, index.getIndexName()));
+            } catch (DBNotFoundException e) {
+                throw new IOException("Table MetaData does not exist for " + tableName);
+            }
+            written.add(key);
+        }
+        dirtyIndexes.removeAll(written);
+    }
+
+    private String getIndexPath(String strTableName, String indexName) {
+        return TABLES_DATA_FOLDER + strTableName + "/" + INDEXES_Table_FOLDER + indexName + INDEX_FILE_EXTENSION;
+    }
+
+    private String getTablePath(String strTableName) {
+        return Utils.getTableFilePath(strTableName);
+    }
 
+    private String getSegmentPath(String strTableName) {
+        return TABLES_DATA_FOLDER + strTableName + "/" + strTableName + SEGMENT_FILE_EXTENSION;
+    }
+
+    // The segment of a table is opened on first use and kept open. Locks the segments only, the buffer pool
+    // calls this while writing back pages
+    private PageSegment getSegment(String strTableName) throws IOException {
+        synchronized (htblSegment) {
+            PageSegment segment = htblSegment.get(strTableName);
+            if (segment == null) {
+                segment = new PageSegment(getSegmentPath(strTableName), Utils.getPageSlotSize());
+                htblSegment.put(strTableName, segment);
+            }
+            return segment;
+        }
+    }
+
+    // Compresses the encoded page with the codec of its table. The table is always loaded when one of its pages
+    // is written, it is looked up without locking this since the buffer pool calls this while writing back pages
+    private byte[] compressPage(String strTableName, byte[] data) throws IOException {
+        Table table = htblTable.get(strTableName);
+        if (table == null)
+            return PageCodec.encode(data, PageCodec.NONE, 0);
+
+        return PageCodec.encode(data, table.getPageCodec(), table.getCompressionLevel());
+    }
+
+    private void writeEntryData(DataOutputStream out, byte[] data) throws IOException {
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    // Encodes every dirty page, table and index and starts a new log file, the operations logged before it are
+    // the ones in the checkpoint. Must be called while no table is changing, so it only sees complete operations.
+    // Pages are encoded here since they keep changing once operations go on, they are compressed by finishCheckpoint
+    private synchronized Checkpoint beginCheckpoint() throws IOException {
+        Checkpoint checkpoint = new Checkpoint();
+        synchronized (removedPages) {
+            checkpoint.removedPages.addAll(removedPages);
+            removedPages.clear();
+        }
+        checkpoint.tableNames.addAll(dirtyTables);
+        checkpoint.indexKeys.addAll(dirtyIndexes);
+        dirtyTables.clear();
+        dirtyIndexes.clear();
+
+        try {
+            checkpoint.pages.addAll(bufferPool.getDirtyPages(checkpoint.pageVersions));
+            for (Page page : checkpoint.pages)
+                checkpoint.pagesData.add(PageFormat.encodePage(page, getTableSchema(page.getTableName())));
+            for (String tableName : checkpoint.tableNames) {
+                checkpoint.filePaths.add(getTablePath(tableName));
+                checkpoint.filesData.add(PageFormat.encodeTable(htblTable.get(tableName), getTableSchema(tableName), false));
+                DBAppMetrics.forTable(tableName).recordTableWrite(checkpoint.filesData.lastElement().length);
+            }
+            for (String key : checkpoint.indexKeys) { // the whole index is written, all its entries, see BPlusTree
+                String tableName = key.substring(0, key.indexOf('/'));
+                Index index = htblIndex.get(key);
+                checkpoint.filePaths.add(getIndexPath(tableName, index.getIndexName()));
+                checkpoint.filesData.add(PageFormat.encodeIndex(index, getTableSchema(tableName)));
+            }
+            checkpoint.logFileNumber = writeAheadLog.startFile();
+        } catch (DBNotFoundException e) {
+            restoreDirty(checkpoint);
+            throw new IOException("Table MetaData does not exist", e);
+        } catch (IOException | RuntimeException e) {
+            restoreDirty(checkpoint);
+            throw e;
+        }
+        return checkpoint;
+    }
+
+    // Writes the checkpoint to the checkpoint file, then copies it to the slots and files and deletes the log files
+    // it replaces. A crash before the checkpoint file is complete leaves the old pages and files and the whole log,
+    // a crash after it is finished by recover. Operations go on meanwhile, their pages are written by the next one
+    private void finishCheckpoint(Checkpoint checkpoint) throws IOException {
+        try {
+            File tempFile = new File(TABLES_DATA_FOLDER + CHECKPOINT_TEMP_FILE);
+            FileOutputStream fileOut = new FileOutputStream(tempFile);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+            try {
+                out.writeLong(checkpoint.logFileNumber);
+                for (String key : checkpoint.removedPages) { // written before the pages, a page written later in the file replaces an empty slot
+                    out.writeByte(CHECKPOINT_PAGE);
+                    PageFormat.writeString(out, key.substring(0, key.lastIndexOf('/')));
+                    out.writeInt(Integer.parseInt(key.substring(key.lastIndexOf('/') + 1)));
+                    writeEntryData(out, new byte[0]);
+                }
+                for (int i = 0; i < checkpoint.pages.size(); i++) {
+                    Page page = checkpoint.pages.get(i);
+                    byte[] data = checkpoint.pagesData.get(i);
+                    long start = System.nanoTime();
+                    byte[] compressed = compressPage(page.getTableName(), data);
+                    out.writeByte(CHECKPOINT_PAGE);
+                    PageFormat.writeString(out, page.getTableName());
+                    out.writeInt(page.getPageIndex());
+                    writeEntryData(out, compressed);
+                    DBAppMetrics.forTable(page.getTableName()).recordPageWrite(System.nanoTime() - start, data.length, compressed.length);
+                }
+                for (int i = 0; i < checkpoint.filePaths.size(); i++) {
+                    out.writeByte(CHECKPOINT_FILE_ENTRY);
+                    PageFormat.writeString(out, checkpoint.filePaths.get(i));
+                    writeEntryData(out, checkpoint.filesData.get(i));
+                }
+                out.flush();
+                fileOut.getFD().sync();
+            } finally {
+                out.close();
+            }
+
+            Files.move(tempFile.toPath(), Paths.get(TABLES_DATA_FOLDER + CHECKPOINT_FILE), StandardCopyOption.ATOMIC_MOVE);
+            Utils.syncFolder(TABLES_DATA_FOLDER);
+            installCheckpoint();
+        } catch (IOException | RuntimeException e) {
+            restoreDirty(checkpoint);
+            throw e;
+        }
+
+        bufferPool.markClean(checkpoint.pages, checkpoint.pageVersions);
+    }
+
+    // Marks what a failed checkpoint did not write as changed again, its pages are still dirty in the buffer pool
+    private void restoreDirty(Checkpoint checkpoint) {
+        synchronized (removedPages) {
+            removedPages.addAll(checkpoint.removedPages);
+        }
+        synchronized (this) {
+            dirtyTables.addAll(checkpoint.tableNames);
+            dirtyIndexes.addAll(checkpoint.indexKeys);
+        }
+    }
+
+    // Copies the pages and files of the checkpoint file to their slots and files, waits until they are on disk and
+    // deletes the log files before the checkpoint. Copying again after a crash gives the same result, the checkpoint
+    // file is deleted once it is fully copied
+    private void installCheckpoint() throws IOException {
+        File checkpointFile = new File(TABLES_DATA_FOLDER + CHECKPOINT_FILE);
+        if (!checkpointFile.exists())
+            return;
+
+        HashSet<PageSegment> segments = new HashSet<>();
+        long logFileNumber;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(checkpointFile)));
+        try {
+            logFileNumber = in.readLong();
+            while (in.available() > 0) {
+                byte entryType = in.readByte();
+                if (entryType == CHECKPOINT_PAGE) {
+                    String tableName = PageFormat.readString(in);
+                    int pageIndex = in.readInt();
+                    byte[] data = new byte[in.readInt()];
+                    in.readFully(data);
+
+                    PageSegment segment = getSegment(tableName);
+                    segment.writePage(pageIndex, data);
+                    segments.add(segment);
+                } else {
+                    String path = PageFormat.readString(in);
+                    byte[] data = new byte[in.readInt()];
+                    in.readFully(data);
+
+                    Utils.createFolder(new File(path).getParent());
+                    FileOutputStream fileOut = new FileOutputStream(path);
+                    fileOut.write(data);
+                    fileOut.getFD().sync();
+                    fileOut.close();
+                }
+            }
+        } finally {
+            in.close();
+        }
+
+        for (PageSegment segment : segments)
+            segment.sync();
+        writeAheadLog.deleteFilesBefore(logFileNumber);
+        Utils.deleteFolder(checkpointFile);
+    }
+
+    private TableSchema getTableSchema(String strTableName) throws DBNotFoundException {
+        return metaDataManager.getTableSchema(strTableName);
+    }
+
+    private void writeBytes(byte[] data, String filePath) throws IOException {
+        FileOutputStream fileOut = new FileOutputStream(filePath);
+        fileOut.write(data);
+        fileOut.close();
+    }
+
+    private byte[] readBytes(String filePath) throws IOException, DBNotFoundException {
+        File file = new File(filePath);
+        if (!file.exists())
+            throw new DBNotFoundException("Table not found");
+
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        byte[] data = new byte[(int) file.length()];
+        in.readFully(data);
         in.close();
-        fileIn.close();
 
-        return obj;
+        return data;
     }
 
+
+    // Dirty pages, tables and indexes encoded by beginCheckpoint
+    private static class Checkpoint {
+        private long logFileNumber; // first log file not in the checkpoint
+        private final Vector<String> removedPages = new Vector<>();
+        private final Vector<Page> pages = new Vector<>();
+        private final Vector<Long> pageVersions = new Vector<>();
+        private final Vector<byte[]> pagesData = new Vector<>(); // encoded, not compressed
+        private final Vector<String> tableNames = new Vector<>();
+        private final Vector<String> indexKeys = new Vector<>();
+        private final Vector<String> filePaths = new Vector<>(); // table and index files
+        private final Vector<byte[]> filesData = new Vector<>();
+    }
 }
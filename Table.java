@@ -2,186 +2,709 @@
 
     import Page.Page;
     import Page.PageReference;
+    import exceptions.DBAlreadyExistsException;
     import exceptions.DBAppException;
+    import Utils.DBAppMetrics;
+    import Utils.PageCodec;
     import Utils.SerializationManager;
     import Utils.Utils;
+    import Utils.WriteAheadLog;
+    import exceptions.DBDuplicateException;
     import exceptions.DBNotFoundException;
+    import index.BPlusTree;
+    import index.Index;
+    import index.IndexEntry;
+    import index.Octree;
+    import query.ParallelScan;
+    import query.Predicate;
+    import query.ResultIterator;
 
-    import java.io.File;
     import java.io.IOException;
-    import java.io.Serializable;
+    import java.util.Arrays;
+    import java.util.Collections;
+    import java.util.Hashtable;
+    import java.util.Iterator;
+    import java.util.Map;
+    import java.util.TreeMap;
+    import java.util.TreeSet;
     import java.util.Vector;
+    import java.util.concurrent.locks.ReentrantReadWriteLock;
 
-    public class Table implements Serializable {
+    public class Table {
+        private static final int PAGE_LATCH_STRIPES = 64;
         private final Vector<Comparable> pagesReference;
         private final String tableName;
         private final String clusterKeyName;
         private int rowsCount;
-        private transient SerializationManager serializationManager;
+        private int nextPageIndex; // pages are stored in the slot of this index, it is not the position of the page in pagesReference
+        private final Vector<Integer> freePageIndexes; // indexes of removed pages, reused before nextPageIndex
+        private final byte pageCodec; // PageCodec the pages of the table are written with
+        private final int compressionLevel; // level of the DEFLATE codec
+        private final ReentrantReadWriteLock lock; // held by DBApp, write lock while pages are added or removed, read lock otherwise
+        private final ReentrantReadWriteLock[] pageLatches; // striped by pageIndex, write latch while a page changes under the read lock
+        private final DBAppMetrics metrics;
+        private final Hashtable<Integer, Integer> htblPageGeneration; // pageIndex -> number of times a page with this index was removed
+        private final Hashtable<Integer, PageReference> htblPageReference; // pageIndex -> PageReference of the page in pagesReference
+        private volatile int backwardShifts; // number of times tuples were shifted to the previous page, see getBackwardShifts
+        private SerializationManager serializationManager;
 
         public Table(String tableName, String clusterKeyName) {
+            this(tableName, clusterKeyName, PageCodec.NONE, 0);
+        }
+
+        public Table(String tableName, String clusterKeyName, byte pageCodec, int compressionLevel) {
             this.pagesReference = new Vector<>();
             this.tableName = tableName;
             this.clusterKeyName = clusterKeyName;
             this.rowsCount = 0;
+            this.nextPageIndex = 0;
+            this.pageCodec = pageCodec;
+            this.compressionLevel = compressionLevel;
+            this.lock = new ReentrantReadWriteLock();
+            this.pageLatches = createPageLatches();
+            this.metrics = DBAppMetrics.forTable(tableName);
+            this.htblPageGeneration = new Hashtable<>();
+            this.htblPageReference = new Hashtable<>();
+
+            this.freePageIndexes = new Vector<>();
 
             String tableFolder = Utils.getTableFolderPath(tableName);
-            String PagesFolder = Utils.getPageFolderPath(tableName);
             Utils.createFolder(tableFolder);
-            Utils.createFolder(PagesFolder);
         }
 
+        // Used when reading a table from disk, the table folders already exist
+        public Table(String tableName, String clusterKeyName, byte pageCodec, int compressionLevel, int rowsCount, int nextPageIndex,
+                     Vector<Integer> freePageIndexes, Vector<Comparable> pagesReference) {
+            this.pagesReference = pagesReference;
+            this.tableName = tableName;
+            this.clusterKeyName = clusterKeyName;
+            this.rowsCount = rowsCount;
+            this.nextPageIndex = nextPageIndex;
+            this.freePageIndexes = freePageIndexes;
+            this.pageCodec = pageCodec;
+            this.compressionLevel = compressionLevel;
+            this.lock = new ReentrantReadWriteLock();
+            this.pageLatches = createPageLatches();
+            this.metrics = DBAppMetrics.forTable(tableName);
+            this.htblPageGeneration = new Hashtable<>();
+            this.htblPageReference = new Hashtable<>();
+            for (Comparable c : pagesReference)
+                htblPageReference.put(((PageReference) c).getPageIndex(), (PageReference) c);
+        }
+
+        // Only the page the tuple is inserted in and at most one neighbour page are written
         public void insert(Tuple tuple) throws DBAppException, IOException {
             if (this.getPagesCount() == 0) // If no pages already exist
-                this.addPage(new Page(this.tableName, getPagesCount()));
+                this.addPage(0, new Page(this.tableName, this.allocatePageIndex()));
 
             Comparable clusterKeyValue = (Comparable) tuple.getClusterKeyValue();
-            int pageIndex = this.getPageIndex(clusterKeyValue); // the index that the tuple should be inserted in
-            if (pageIndex > this.getPagesCount() - 1) // If index is out of bounds (clusterValue is greatest)
-                pageIndex--;
+            int position = this.getPagePosition(clusterKeyValue); // the position of the page that the tuple should be inserted in
+            if (position > this.getPagesCount() - 1) // If position is out of bounds (clusterValue is greatest)
+                position--;
+
+            Page page = serializationManager.pinPage(this.tableName, getPageReference(position).getPageIndex());
+            try {
+                page.addTuple(tuple);
+                this.indexInsert(tuple, page.getPageIndex());
+                if (page.isOverflow())
+                    this.handleOverflow(position, page);
+            } finally {
+                serializationManager.unpinPage(page, true);
+            }
+            this.updatePageReference(position, page);
 
-            Page page = serializationManager.deserializePage(this.tableName, pageIndex);
+            this.addRowsCount(1);
+        }
 
-            if (this.isFull()) // Table is Full
-                this.addPage(new Page(this.tableName, getPagesCount()));
+        // Inserts the tuple while other inserts change other pages, the caller holds the read lock of the table.
+        // Only the latch of the page the tuple belongs to is held, and the latch of the next page if the page is full
+        // and one tuple has to be shifted to it (latch crabbing). Returns false without changing anything if the
+        // insert needs a page to be split or a latch could not be taken, the caller then uses insert under the write
+        // lock. The insert is logged once the page is latched so inserts into the same page are logged in order.
+        public boolean insertLatched(Tuple tuple, Vector<Hashtable<String, Object>> logRows) throws DBAppException, IOException {
+            if (this.getPagesCount() == 0)
+                return false;
 
-            page.addTuple(tuple);
-            serializationManager.serializePage(page);
+            Comparable clusterKeyValue = (Comparable) tuple.getClusterKeyValue();
+            int position = Math.min(this.getPagePosition(clusterKeyValue), this.getPagesCount() - 1);
+            int pageIndex = getPageReference(position).getPageIndex();
+
+            ReentrantReadWriteLock.WriteLock latch = getPageLatch(pageIndex).writeLock();
+            latch.lock();
+            try {
+                // Shifting a tuple to the next page moves the bounds of both pages, the tuple may belong to the next one now
+                if (Math.min(this.getPagePosition(clusterKeyValue), this.getPagesCount() - 1) != position)
+                    return false;
+
+                Page page = serializationManager.pinPage(this.tableName, pageIndex);
+                boolean isInserted = false;
+                try {
+                    if (!page.isFull()) {
+                        serializationManager.log(WriteAheadLog.INSERT, this.tableName, logRows);
+                        page.addTuple(tuple);
+                        this.indexInsert(tuple, page.getPageIndex());
+                        isInserted = true;
+                    } else if (position < this.getPagesCount() - 1) {
+                        ReentrantReadWriteLock.WriteLock nextLatch = getPageLatch(getPageReference(position + 1).getPageIndex()).writeLock();
+                        if (nextLatch.tryLock()) { // waiting could deadlock, two pages may share a latch stripe
+                            try {
+                                isInserted = insertShifting(tuple, position, page, logRows);
+                            } finally {
+                                nextLatch.unlock();
+                            }
+                        }
+                    }
+                } finally {
+                    serializationManager.unpinPage(page, isInserted);
+                }
+
+                if (isInserted) {
+                    this.updatePageReference(position, page);
+                    this.addRowsCount(1);
+                }
+                return isInserted;
+            } finally {
+                latch.unlock();
+            }
+        }
 
-            this.rowsCount++;
-            this.reArrangePages();
+        // Inserts all tuples sorted by clusterKey in one pass over the affected pages.
+        // An empty table is bulk loaded, otherwise tuples are merged into the pages they belong to and
+        // overflowing pages are split. New pages are filled up to the bulk load fill factor.
+        public void insertBatch(Vector<Tuple> tuples) throws DBAppException, IOException {
+            if (tuples.isEmpty())
+                return;
+
+            Collections.sort(tuples);
+            for (int i = 1; i < tuples.size(); i++)
+                if (tuples.get(i - 1).compareTo(tuples.get(i)) == 0)
+                    throw new DBDuplicateException("Duplicate clusterKey " + tuples.get(i).getClusterKeyValue() + " in batch");
+
+            int rowsPerPage = Math.max(1, (int) (Utils.getMaxRowsCountInPage() * Utils.getBulkLoadFillFactor()));
+            if (this.getPagesCount() == 0)
+                this.bulkLoad(tuples, rowsPerPage);
+            else
+                this.mergeBatch(tuples, rowsPerPage);
+
+            this.addRowsCount(tuples.size());
         }
 
-        public void delete(Tuple tuple) throws DBAppException, IOException {
-            String clusteringKeyValue = tuple.getClusterKeyValue();
-            
-            // Get the page numbers containing the tuple to be deleted using the index
-            Set<Integer> pageNumbers = index.getPages(clusteringKeyValue);
-            
-            // Remove tuple from each page in memory
-            for (int pageNumber : pageNumbers) {
-                Page page = getPage(pageNumber);
-                page.delete(tuple);
-                
-                // If the page becomes empty after the deletion, remove it from the index
-                if (page.isEmpty()) {
-                    index.removePage(pageNumber);
+        // Replaces the given column values of the tuple with the clusterKey. Only its page changes and the page is
+        // latched, so it runs under the read lock. The update is logged under the latch, so updates of the same tuple
+        // are logged in the order they are done. logRows is null when the log is replayed
+        public void update(Comparable clusterKeyValue, Hashtable<String, Object> htblColNameValue,
+                           Vector<Hashtable<String, Object>> logRows) throws DBAppException, IOException {
+            while (true) {
+                int position = this.getPagePosition(clusterKeyValue);
+                if (position >= this.getPagesCount())
+                    throw new DBNotFoundException("Tuple does not exist");
+                int pageIndex = getPageReference(position).getPageIndex();
+
+                ReentrantReadWriteLock.WriteLock latch = getPageLatch(pageIndex).writeLock();
+                latch.lock();
+                try {
+                    // An insert may have shifted the tuple to the next page before the latch was taken
+                    if (this.getPagePosition(clusterKeyValue) != position)
+                        continue;
+
+                    Page page = serializationManager.pinPage(this.tableName, pageIndex);
+                    boolean isUpdated = false;
+                    try {
+                        Tuple tuple = page.getTuple(clusterKeyValue);
+                        if (logRows != null)
+                            serializationManager.log(WriteAheadLog.UPDATE, this.tableName, logRows);
+
+                        Tuple updatedTuple = tuple.withValues(htblColNameValue);
+                        page.updateTuple(updatedTuple);
+                        this.indexUpdate(tuple, updatedTuple, htblColNameValue, pageIndex);
+                        isUpdated = true;
+                    } finally {
+                        serializationManager.unpinPage(page, isUpdated);
+                    }
+
+                    this.updatePageReference(position, page);
+                    return;
+                } finally {
+                    latch.unlock();
                 }
             }
-        
-            // Update metadata file
-            Hashtable<String, Hashtable<String, String>> htblColNameMetaData = metaDataManager.getMetaData(tableName);
-            for (String columnName : htblColNameMetaData.keySet()) {
-                if (columnName.equals(clusterKeyName)) {
-                    continue;
-                }
-                
-                Hashtable<String, String> columnMetaData = htblColNameMetaData.get(columnName);
-                String min = columnMetaData.get("min");
-                String max = columnMetaData.get("max");
-                
-                Object columnValue = tuple.getColumnValue(columnName);
-                String strColumnValue = columnValue.toString();
-                
-                if (min.equals(strColumnValue)) {
-                    // Find new min value
-                    PageIterator pageIterator = new PageIterator(tableName, serializationManager);
-                    while (pageIterator.hasNext()) {
-                        Page p = pageIterator.next();
-                        if (p.getTuples().isEmpty()) {
-                            continue;
-                        }
-                        
-                        Tuple t = p.getTuples().firstElement();
-                        String tValue = t.getColumnValue(columnName).toString();
-                        if (tValue.compareTo(min) < 0) {
-                            min = tValue;
-                        }
+        }
+
+        // Updates many tuples, htblKeyColNameValue maps each clusterKey to its new column values. Updates are grouped
+        // by page so every page is changed once for all its tuples. Every clusterKey is looked up before any page
+        // changes, so a missing one leaves the table unchanged. The caller holds the write lock
+        public void updateBatch(TreeMap<Comparable, Hashtable<String, Object>> htblKeyColNameValue) throws DBAppException, IOException {
+            TreeMap<Integer, Vector<Comparable>> htblPositionKeys = new TreeMap<>();
+            for (Comparable clusterKeyValue : htblKeyColNameValue.keySet()) {
+                int position = this.getPagePosition(clusterKeyValue);
+                if (position >= this.getPagesCount())
+                    throw new DBNotFoundException("Tuple " + clusterKeyValue + " does not exist");
+                htblPositionKeys.computeIfAbsent(position, k -> new Vector<>()).add(clusterKeyValue);
+            }
+
+            for (Map.Entry<Integer, Vector<Comparable>> positionKeys : htblPositionKeys.entrySet()) {
+                Page page = serializationManager.deserializePage(this.tableName, getPageReference(positionKeys.getKey()).getPageIndex());
+                for (Comparable clusterKeyValue : positionKeys.getValue())
+                    if (!page.containsTuple(clusterKeyValue))
+                        throw new DBNotFoundException("Tuple " + clusterKeyValue + " does not exist");
+            }
+
+            for (Map.Entry<Integer, Vector<Comparable>> positionKeys : htblPositionKeys.entrySet()) {
+                int position = positionKeys.getKey();
+                Page page = serializationManager.pinPage(this.tableName, getPageReference(position).getPageIndex());
+                try {
+                    Vector<Tuple> updatedTuples = new Vector<>();
+                    for (Comparable clusterKeyValue : positionKeys.getValue()) {
+                        Tuple tuple = page.getTuple(clusterKeyValue);
+                        Hashtable<String, Object> htblColNameValue = htblKeyColNameValue.get(clusterKeyValue);
+                        Tuple updatedTuple = tuple.withValues(htblColNameValue);
+                        updatedTuples.add(updatedTuple);
+                        this.indexUpdate(tuple, updatedTuple, htblColNameValue, page.getPageIndex());
                     }
-                    columnMetaData.put("min", min);
+                    page.updateTuples(updatedTuples);
+                } finally {
+                    serializationManager.unpinPage(page, true);
                 }
-                
-                if (max.equals(strColumnValue)) {
-                    // Find new max value
-                    PageIterator pageIterator = new PageIterator(tableName, serializationManager);
-                    while (pageIterator.hasNext()) {
-                        Page p = pageIterator.next();
-                        if (p.getTuples().isEmpty()) {
-                            continue;
-                        }
-                        
-                        Tuple t = p.getTuples().lastElement();
-                        String tValue = t.getColumnValue(columnName).toString();
-                        if (tValue.compareTo(max) > 0) {
-                            max = tValue;
-                        }
-                    }
-                    columnMetaData.put("max", max);
+                this.updatePageReference(position, page);
+            }
+        }
+
+        // Deletes all tuples matching every column value in htblColNameValue, returns the number of deleted tuples.
+        // Uses the clusterKey if it is given, otherwise a B+ tree index on one of the columns or an Octree index on
+        // three of the columns, otherwise scans the pages whose zone maps may hold the values.
+        // With parallel scans enabled the pages are searched in parallel and the matching tuples deleted afterwards
+        public int delete(Hashtable<String, Object> htblColNameValue) throws DBAppException, IOException {
+            Object clusterKeyValue = htblColNameValue.get(clusterKeyName);
+            if (clusterKeyValue != null) {
+                int position = this.getPagePosition((Comparable) clusterKeyValue);
+                if (position >= this.getPagesCount() || getPageReference(position).compareTo(clusterKeyValue) != 0)
+                    return 0;
+
+                Vector<Object> clusterKeyValues = new Vector<>();
+                clusterKeyValues.add(clusterKeyValue);
+                return this.deleteFromPage(position, htblColNameValue, clusterKeyValues);
+            }
+
+            BPlusTree index = this.getBPlusTreeIndex(htblColNameValue);
+            if (index != null) {
+                Comparable value = (Comparable) htblColNameValue.get(index.getColumnNames()[0]);
+                return this.deleteIndexEntries(index.search(value), htblColNameValue);
+            }
+
+            Octree octree = this.getOctreeIndex(htblColNameValue);
+            if (octree != null) {
+                String[] colNames = octree.getColumnNames();
+                Comparable[] values = new Comparable[colNames.length];
+                boolean[] isInclusive = new boolean[colNames.length];
+                for (int i = 0; i < colNames.length; i++) {
+                    values[i] = (Comparable) htblColNameValue.get(colNames[i]);
+                    isInclusive[i] = true;
                 }
+                return this.deleteIndexEntries(octree.search(values, isInclusive, values, isInclusive), htblColNameValue);
             }
-            
-            // Serialize updated metadata to disk
-            metaDataManager.saveMetaData(tableName, htblColNameMetaData);
-            
-            // Serialize updated table to disk
-            serializationManager.serializeTable(this);
+
+            if (ParallelScan.isEnabled())
+                return this.parallelDelete(htblColNameValue);
+
+            int deletedCount = 0;
+            for (int position = this.getPagesCount() - 1; position >= 0; position--)
+                if (this.mayContain(getPageReference(position), htblColNameValue))
+                    deletedCount += this.deleteFromPage(position, htblColNameValue, null);
+            return deletedCount;
         }
-        
-        
 
+        // Deletes the tuples whose clusterKey is between minClusterKey and maxClusterKey, both inclusive and null if
+        // unbounded, returns the number of deleted tuples. Pages entirely inside the range are removed without being
+        // read unless the table has indexes, which need the deleted tuples. Only the boundary pages are changed
+        public int deleteRange(Comparable minClusterKey, Comparable maxClusterKey) throws DBAppException, IOException {
+            int start = minClusterKey == null ? 0 : this.getPagePosition(minClusterKey);
+            int end = start;
+            while (end < this.getPagesCount() && (maxClusterKey == null || ((Comparable) getPageReference(end).getMin()).compareTo(maxClusterKey) <= 0))
+                end++;
+
+            boolean hasIndexes = !serializationManager.getIndexes(this.tableName).isEmpty();
+            int deletedCount = 0;
+            for (int position = end - 1; position >= start; position--) { // last to first so removed pages do not shift positions to visit
+                PageReference pageReference = getPageReference(position);
+                boolean isInside = (minClusterKey == null || ((Comparable) pageReference.getMin()).compareTo(minClusterKey) >= 0)
+                        && (maxClusterKey == null || ((Comparable) pageReference.getMax()).compareTo(maxClusterKey) <= 0);
+                if (isInside && !hasIndexes) {
+                    this.removePage(position);
+                    this.addRowsCount(-pageReference.getSize());
+                    deletedCount += pageReference.getSize();
+                } else
+                    deletedCount += this.deleteRangeFromPage(position, minClusterKey, maxClusterKey);
+            }
+            return deletedCount;
+        }
 
+        // Returns an iterator over the tuples matching the predicate sorted by clusterKey, the pages at the given
+        // positions, or all pages if positions is null, are read lazily while iterating
+        public Iterator<Tuple> select(Predicate predicate, TreeSet<Integer> positions) throws IOException {
+            int[] pageIndexes = new int[positions == null ? this.getPagesCount() : positions.size()];
+            int[] pageGenerations = new int[pageIndexes.length];
+            int i = 0;
+            for (int position = 0; position < this.getPagesCount(); position++)
+                if (positions == null || positions.contains(position)) {
+                    pageIndexes[i] = getPageReference(position).getPageIndex();
+                    pageGenerations[i] = this.getPageGeneration(pageIndexes[i]);
+                    i++;
+                }
 
+            metrics.recordQuery(this.getPagesCount() - pageIndexes.length);
+            return new ResultIterator(serializationManager, this, pageIndexes, pageGenerations, predicate);
+        }
 
-        // It is guaranteed that there are enough pages
-        private void reArrangePages() throws IOException, DBAppException {
-            this.distributePages();
-            this.removeEmptyPages();
+        // Adds all tuples already in the table to a new index
+        public void buildIndex(Index index) throws IOException, DBAppException {
+            for (int position = 0; position < this.getPagesCount(); position++) {
+                int pageIndex = getPageReference(position).getPageIndex();
+                Page page = serializationManager.deserializePage(this.tableName, pageIndex);
+                for (Comparable tuple : page.getTuples())
+                    index.insert((Tuple) tuple, pageIndex);
+            }
+            serializationManager.serializeIndex(this.tableName, index);
         }
 
-        public void distributePages() throws IOException, DBAppException {
-            int n = this.getPagesCount() ;
-            for (int i = 0; i < n - 1; i++) {
-                Page currentPage = serializationManager.deserializePage(this.tableName, i);
-                Page nextPage = serializationManager.deserializePage(this.tableName, i + 1);
+        private int parallelDelete(Hashtable<String, Object> htblColNameValue) throws DBAppException, IOException {
+            Vector<Integer> pageIndexes = new Vector<>();
+            for (int position = 0; position < this.getPagesCount(); position++)
+                if (this.mayContain(getPageReference(position), htblColNameValue))
+                    pageIndexes.add(getPageReference(position).getPageIndex());
 
-                if (currentPage.isOverflow()) { // Shift one tuple to next page
-                    int numShifts = 1;
-                    shiftTuplesNext(currentPage, nextPage, numShifts);
+            Predicate predicate = new Predicate() {
+                public boolean evaluate(Tuple tuple) {
+                    return tuple.matches(htblColNameValue);
                 }
-                if (!currentPage.isFull() && !nextPage.isEmpty()) { // Shift n tuples from next page to current page
-                    int numShifts = currentPage.getSize();
-                    shiftTuplesPrevious(nextPage, currentPage, numShifts);
+            };
+            int[] arrPageIndexes = pageIndexes.stream().mapToInt(Integer::intValue).toArray();
+            Vector<Tuple> tuples = ParallelScan.scan(serializationManager, this, arrPageIndexes, null, 0, arrPageIndexes.length, predicate, false);
+
+            Vector<IndexEntry> entries = new Vector<>();
+            for (Tuple tuple : tuples)
+                entries.add(new IndexEntry(-1, tuple.getClusterKeyValue()));
+            return this.deleteIndexEntries(entries, htblColNameValue);
+        }
+
+        private boolean mayContain(PageReference pageReference, Hashtable<String, Object> htblColNameValue) {
+            for (Map.Entry<String, Object> colNameValue : htblColNameValue.entrySet())
+                if (!pageReference.mayContain(colNameValue.getKey(), "=", (Comparable) colNameValue.getValue()))
+                    return false;
+            return true;
+        }
+
+        // Deletes the tuples pointed to by the index entries, each page is visited once from the last to the first
+        // so that removing an empty page does not shift the positions still to be visited
+        private int deleteIndexEntries(Vector<IndexEntry> entries, Hashtable<String, Object> htblColNameValue) throws DBAppException, IOException {
+            TreeMap<Integer, Vector<Object>> htblPositionKeys = new TreeMap<>(Collections.reverseOrder());
+            for (IndexEntry entry : entries) {
+                int position = this.getPagePosition((Comparable) entry.getClusterKeyValue());
+                if (position >= this.getPagesCount())
+                    continue;
+                htblPositionKeys.computeIfAbsent(position, k -> new Vector<>()).add(entry.getClusterKeyValue());
+            }
+
+            int deletedCount = 0;
+            for (Map.Entry<Integer, Vector<Object>> positionKeys : htblPositionKeys.entrySet())
+                deletedCount += this.deleteFromPage(positionKeys.getKey(), htblColNameValue, positionKeys.getValue());
+            return deletedCount;
+        }
+
+        // Deletes matching tuples of one page, only the tuples with the given clusterKeys are checked
+        // or all tuples of the page if clusterKeyValues is null. An empty page is removed from the table.
+        private int deleteFromPage(int position, Hashtable<String, Object> htblColNameValue, Vector<Object> clusterKeyValues) throws DBAppException, IOException {
+            Page page = serializationManager.pinPage(this.tableName, getPageReference(position).getPageIndex());
+            Vector<Tuple> deletedTuples = new Vector<>();
+            try {
+                Vector<Tuple> candidates = new Vector<>();
+                if (clusterKeyValues == null)
+                    for (Comparable tuple : page.getTuples())
+                        candidates.add((Tuple) tuple);
+                else
+                    for (Object clusterKeyValue : clusterKeyValues)
+                        if (page.containsTuple(clusterKeyValue))
+                            candidates.add(page.getTuple(clusterKeyValue));
+
+                for (Tuple tuple : candidates)
+                    if (tuple.matches(htblColNameValue)) {
+                        page.removeTuple(tuple.getClusterKeyValue());
+                        deletedTuples.add(tuple);
+                    }
+            } finally {
+                serializationManager.unpinPage(page, !deletedTuples.isEmpty());
+            }
+
+            for (Tuple tuple : deletedTuples)
+                this.indexDelete(tuple);
+            this.addRowsCount(-deletedTuples.size());
+
+            if (page.isEmpty())
+                this.removePage(position);
+            else if (!deletedTuples.isEmpty())
+                this.updatePageReference(position, page);
+
+            return deletedTuples.size();
+        }
+
+        // The tuples of a page in the range are next to each other, they are removed at once
+        private int deleteRangeFromPage(int position, Comparable minClusterKey, Comparable maxClusterKey) throws DBAppException, IOException {
+            Page page = serializationManager.pinPage(this.tableName, getPageReference(position).getPageIndex());
+            Vector<Comparable> deletedTuples;
+            try {
+                int from = minClusterKey == null ? 0 : getTuplePosition(page, minClusterKey, false);
+                int to = maxClusterKey == null ? page.getSize() : getTuplePosition(page, maxClusterKey, true);
+                deletedTuples = from < to ? page.removeTuples(from, to) : new Vector<>();
+            } finally {
+                serializationManager.unpinPage(page, true);
+            }
+
+            for (Comparable tuple : deletedTuples)
+                this.indexDelete((Tuple) tuple);
+            this.addRowsCount(-deletedTuples.size());
+
+            if (page.isEmpty())
+                this.removePage(position);
+            else if (!deletedTuples.isEmpty())
+                this.updatePageReference(position, page);
+
+            return deletedTuples.size();
+        }
+
+        // position in the page of the first tuple whose clusterKey is not less than clusterKeyValue,
+        // or greater than it if isAfter is true
+        private static int getTuplePosition(Page page, Comparable clusterKeyValue, boolean isAfter) {
+            int index = Utils.binarySearch(page.getTuples(), clusterKeyValue);
+            if (index < 0)
+                return Utils.getInsertionIndex(index);
+            return isAfter ? index + 1 : index;
+        }
+
+        // returns a B+ tree index on one of the columns, null if there is none
+        private BPlusTree getBPlusTreeIndex(Hashtable<String, Object> htblColNameValue) throws IOException, DBNotFoundException {
+            for (Index index : serializationManager.getIndexes(this.tableName))
+                if (index instanceof BPlusTree && htblColNameValue.containsKey(index.getColumnNames()[0]))
+                    return (BPlusTree) index;
+            return null;
+        }
+
+        // returns an Octree index whose three columns are all given, null if there is none
+        private Octree getOctreeIndex(Hashtable<String, Object> htblColNameValue) throws IOException, DBNotFoundException {
+            for (Index index : serializationManager.getIndexes(this.tableName))
+                if (index instanceof Octree && htblColNameValue.keySet().containsAll(Arrays.asList(index.getColumnNames())))
+                    return (Octree) index;
+            return null;
+        }
+
+        private void indexInsert(Tuple tuple, int pageIndex) throws IOException, DBNotFoundException {
+            for (Index index : serializationManager.getIndexes(this.tableName)) {
+                index.insert(tuple, pageIndex);
+                serializationManager.serializeIndex(this.tableName, index);
+            }
+        }
+
+        private void indexDelete(Tuple tuple) throws IOException, DBNotFoundException {
+            for (Index index : serializationManager.getIndexes(this.tableName)) {
+                index.delete(tuple);
+                serializationManager.serializeIndex(this.tableName, index);
+            }
+        }
+
+        // Only the indexes on an updated column change, the tuple stays in its page
+        private void indexUpdate(Tuple tuple, Tuple updatedTuple, Hashtable<String, Object> htblColNameValue, int pageIndex) throws IOException, DBNotFoundException {
+            for (Index index : serializationManager.getIndexes(this.tableName))
+                for (String colName : index.getColumnNames())
+                    if (htblColNameValue.containsKey(colName)) {
+                        index.delete(tuple);
+                        index.insert(updatedTuple, pageIndex);
+                        serializationManager.serializeIndex(this.tableName, index);
+                        break;
+                    }
+        }
+
+        // called whenever a tuple is moved to another page
+        private void indexMove(Tuple tuple, int pageIndex) throws IOException, DBNotFoundException {
+            for (Index index : serializationManager.getIndexes(this.tableName)) {
+                index.updatePageIndex(tuple, pageIndex);
+                serializationManager.serializeIndex(this.tableName, index);
+            }
+        }
+
+        // Inserts into the full page at position and shifts its last tuple to the next page, both pages are latched.
+        // The caller unpins the page
+        private boolean insertShifting(Tuple tuple, int position, Page page, Vector<Hashtable<String, Object>> logRows) throws DBAppException, IOException {
+            Page nextPage = serializationManager.pinPage(this.tableName, getPageReference(position + 1).getPageIndex());
+            boolean hasRoom = !nextPage.isFull();
+            try {
+                if (!hasRoom)
+                    return false;
+
+                serializationManager.log(WriteAheadLog.INSERT, this.tableName, logRows);
+                page.addTuple(tuple);
+                this.indexInsert(tuple, page.getPageIndex());
+                shiftTuplesNext(page, nextPage, 1);
+            } finally {
+                serializationManager.unpinPage(nextPage, hasRoom);
+            }
+
+            this.updatePageReference(position + 1, nextPage);
+            return true;
+        }
+
+        private ReentrantReadWriteLock[] createPageLatches() {
+            ReentrantReadWriteLock[] latches = new ReentrantReadWriteLock[PAGE_LATCH_STRIPES];
+            for (int i = 0; i < latches.length; i++)
+                latches[i] = new ReentrantReadWriteLock();
+            return latches;
+        }
+
+        // inserts under the read lock of the table change the count concurrently
+        private synchronized void addRowsCount(int count) {
+            this.rowsCount += count;
+        }
+
+        // Moves one tuple of the overflowing page to a neighbour page that has room,
+        // if both neighbours are full the page is split into two pages
+        private void handleOverflow(int position, Page page) throws IOException, DBAppException {
+            if (position < this.getPagesCount() - 1) {
+                Page nextPage = serializationManager.pinPage(this.tableName, getPageReference(position + 1).getPageIndex());
+                boolean hasRoom = !nextPage.isFull();
+                if (hasRoom)
+                    shiftTuplesNext(page, nextPage, 1);
+                serializationManager.unpinPage(nextPage, hasRoom);
+
+                if (hasRoom) {
+                    this.updatePageReference(position + 1, nextPage);
+                    return;
+                }
+            }
+
+            if (position > 0) {
+                Page previousPage = serializationManager.pinPage(this.tableName, getPageReference(position - 1).getPageIndex());
+                boolean hasRoom = !previousPage.isFull();
+                if (hasRoom)
+                    shiftTuplesPrevious(page, previousPage, 1);
+                serializationManager.unpinPage(previousPage, hasRoom);
+
+                if (hasRoom) {
+                    this.updatePageReference(position - 1, previousPage);
+                    return;
+                }
+            }
+
+            // Split: upper half of the page goes to a new page placed right after it
+            Page newPage = new Page(this.tableName, this.allocatePageIndex());
+            shiftTuplesNext(page, newPage, page.getSize() / 2);
+            this.addPage(position + 1, newPage);
+            metrics.recordPageSplit();
+        }
+
+        private void bulkLoad(Vector<Tuple> tuples, int rowsPerPage) throws IOException, DBNotFoundException {
+            for (int start = 0; start < tuples.size(); start += rowsPerPage) {
+                int end = Math.min(start + rowsPerPage, tuples.size());
+                Page page = new Page(this.tableName, this.allocatePageIndex(), new Vector<Comparable>(tuples.subList(start, end)));
+                this.addPage(this.getPagesCount(), page);
+
+                for (int i = start; i < end; i++)
+                    this.indexInsert(tuples.get(i), page.getPageIndex());
+            }
+        }
+
+        private void mergeBatch(Vector<Tuple> tuples, int rowsPerPage) throws DBAppException, IOException {
+            // Route every tuple to its page before any page changes, tuples are sorted so positions are ascending
+            int[] positions = new int[tuples.size()];
+            for (int i = 0; i < tuples.size(); i++)
+                positions[i] = Math.min(this.getPagePosition((Comparable) tuples.get(i).getClusterKeyValue()), this.getPagesCount() - 1);
+
+            // Check every group against its page first so that a duplicate leaves the table unchanged
+            for (int end = tuples.size(); end > 0; ) {
+                int start = getGroupStart(positions, end);
+                Page page = serializationManager.deserializePage(this.tableName, getPageReference(positions[start]).getPageIndex());
+                for (int i = start; i < end; i++)
+                    if (Utils.binarySearch(page.getTuples(), tuples.get(i)) >= 0)
+                        throw new DBAlreadyExistsException("Tuple already exists");
+                end = start;
+            }
+
+            // Groups are merged from the last page to the first so that new pages do not shift positions still to be merged
+            for (int end = tuples.size(); end > 0; ) {
+                int start = getGroupStart(positions, end);
+                int position = positions[start];
+
+                Page page = serializationManager.pinPage(this.tableName, getPageReference(position).getPageIndex());
+                try {
+                    for (int i = start; i < end; i++) {
+                        page.addTuple(tuples.get(i));
+                        this.indexInsert(tuples.get(i), page.getPageIndex());
+                    }
+
+                    if (page.isOverflow())
+                        this.splitPage(position, page, rowsPerPage);
+                } finally {
+                    serializationManager.unpinPage(page, true);
                 }
-                serializationManager.serializePage(currentPage); // Serialize current page after modifications
+                this.updatePageReference(position, page);
+
+                end = start;
             }
         }
 
-        private void removeEmptyPages() throws IOException, DBAppException {
-            int n = this.getPagesCount() ;
-            for (int i = n - 1; i >= 0; i--) {
-                Page currentPage = serializationManager.deserializePage(this.tableName, i);
-                if  (currentPage.isEmpty())
-                    this.removePage(currentPage);
+        // first index of the group of tuples routed to the same page as tuple end - 1
+        private static int getGroupStart(int[] positions, int end) {
+            int start = end - 1;
+            while (start > 0 && positions[start - 1] == positions[end - 1])
+                start--;
+            return start;
+        }
+
+        // Keeps the first rowsPerPage tuples in the page and moves the rest to new pages placed right after it
+        private void splitPage(int position, Page page, int rowsPerPage) throws IOException, DBNotFoundException {
+            Vector<Comparable> rest = page.removeTuplesFrom(rowsPerPage);
+            metrics.recordPageSplit();
+            for (int start = 0; start < rest.size(); start += rowsPerPage) {
+                int end = Math.min(start + rowsPerPage, rest.size());
+                Page newPage = new Page(this.tableName, this.allocatePageIndex(), new Vector<Comparable>(rest.subList(start, end)));
+                this.addPage(++position, newPage);
+
+                for (int i = start; i < end; i++)
+                    this.indexMove((Tuple) rest.get(i), newPage.getPageIndex());
             }
         }
 
-        private void addPage(Page page) throws IOException {
+        private void addPage(int position, Page page) throws IOException {
             PageReference pageReference = page.getPageReference();
-            pagesReference.add(pageReference);
+            pagesReference.add(position, pageReference);
+            htblPageReference.put(pageReference.getPageIndex(), pageReference);
 
             serializationManager.serializePage(page);
         }
 
-        private void removePage(Page page) {
-            PageReference pageReference = page.getPageReference();
-            pagesReference.remove(pageReference);
+        // The page keeps its own PageReference up to date, the table copy is replaced with it after each modification
+        private void updatePageReference(int position, Page page) {
+            pagesReference.set(position, page.getPageReference());
+            htblPageReference.put(page.getPageIndex(), page.getPageReference());
+        }
+
+        // The generation of the pageIndex changes, so a reader that took the pageIndex before does not read the page
+        // reusing it. Called under the write lock
+        private void removePage(int position) throws IOException {
+            PageReference pageReference = (PageReference) pagesReference.remove(position);
 
-            File pageFile = new File(pageReference.getPagePath());
-            Utils.deleteFolder(pageFile);
+            int pageIndex = pageReference.getPageIndex();
+            htblPageReference.remove(pageIndex);
+            serializationManager.deletePage(this.tableName, pageIndex);
+            htblPageGeneration.put(pageIndex, this.getPageGeneration(pageIndex) + 1);
+            freePageIndexes.add(pageIndex);
         }
 
-        // returns page where this clusterKeyValue is between min and max
-        private int getPageIndex(Comparable clusterKeyValue) {
+        // Reuses the index of a removed page so that the slots of the page segment are reused
+        private int allocatePageIndex() {
+            if (!freePageIndexes.isEmpty())
+                return freePageIndexes.remove(freePageIndexes.size() - 1);
+            return nextPageIndex++;
+        }
+
+        // returns position of the page where this clusterKeyValue is between min and max
+        public int getPagePosition(Comparable clusterKeyValue) {
             int index = Utils.binarySearch(pagesReference, clusterKeyValue);
             if (index < 0) // If not found, get page index where it would be the new min
                 index = Utils.getInsertionIndex(index);
@@ -189,17 +712,19 @@
             return index;
         }
 
-        private void shiftTuplesNext(Page currentPage, Page nextPage, int numShifts) throws DBAppException {
+        private void shiftTuplesNext(Page currentPage, Page nextPage, int numShifts) throws DBAppException, IOException {
             int n = currentPage.getSize();
             for (int i = 0; i < numShifts && i < n; i++) {
                 
                 Object maxClusterKey = currentPage.getMax();
                 Tuple tuple = currentPage.removeTuple(maxClusterKey);
                 nextPage.addTuple(tuple);
+                this.indexMove(tuple, nextPage.getPageIndex());
             }
+            metrics.recordTuplesShifted(Math.min(numShifts, n));
         }
             // difference between previous and next is min, max clusterKey
-        private void shiftTuplesPrevious(Page currentPage, Page previousPage, int numShifts) throws DBAppException {
+        private void shiftTuplesPrevious(Page currentPage, Page previousPage, int numShifts) throws DBAppException, IOException {
             int n = currentPage.getSize();
             for (int i = 0; i < numShifts && i < n; i++) {
                 if (previousPage.isFull()) {
@@ -208,6 +733,9 @@
                 Object minClusterKey = currentPage.getMin();
                 Tuple tuple = currentPage.removeTuple(minClusterKey);
                 previousPage.addTuple(tuple);
+                this.indexMove(tuple, previousPage.getPageIndex());
+                backwardShifts++; // only under the write lock
+                metrics.recordTuplesShifted(1);
             }
         }
         
@@ -215,14 +743,6 @@
     
         
 
-
-        public String getPagePath(int pageIndex) {
-            PageReference pageReference = (PageReference) pagesReference.get(pageIndex);
-            String pagePath = pageReference.getPagePath();
-
-            return pagePath;
-        }
-
     //    public Enumeration<Comparable> getPagesReference() {
     //        return pagesReference.elements();
     //    }
@@ -231,6 +751,11 @@
             return (PageReference) pagesReference.get(pageIndex);
         }
 
+        // returns the PageReference of the page stored in the slot pageIndex, null if the table has no such page
+        public PageReference getPageReferenceByIndex(int pageIndex) {
+            return htblPageReference.get(pageIndex);
+        }
+
         public String getTableName() {
             return tableName;
         }
@@ -244,13 +769,55 @@
         }
 
         public boolean isFull() throws IOException {
-            return rowsCount >= Utils.getMaxRowsCountInPage() * getPagesCount();
+            return getRowsCount() >= Utils.getMaxRowsCountInPage() * getPagesCount();
         }
 
-        public int getRowsCount() {
+        public synchronized int getRowsCount() {
             return rowsCount;
         }
 
+        public int getNextPageIndex() {
+            return nextPageIndex;
+        }
+
+        public Vector<Integer> getFreePageIndexes() {
+            return freePageIndexes;
+        }
+
+        public DBAppMetrics getMetrics() {
+            return metrics;
+        }
+
+        // A reader that already read the previous page would miss the shifted tuples, it reads the following pages
+        // again if the count changed. Read it under the read lock of the table, tuples are only shifted back under the write lock
+        public int getBackwardShifts() {
+            return backwardShifts;
+        }
+
+        // Read it under the read lock of the table, pages are only removed under the write lock
+        public int getPageGeneration(int pageIndex) {
+            Integer generation = htblPageGeneration.get(pageIndex);
+            return generation == null ? 0 : generation;
+        }
+
+        public ReentrantReadWriteLock getLock() {
+            return lock;
+        }
+
+        // Latch of the page, pages whose indexes differ by a multiple of PAGE_LATCH_STRIPES share a latch.
+        // Read it under the read lock of the table, insertLatched may be changing the page
+        public ReentrantReadWriteLock getPageLatch(int pageIndex) {
+            return pageLatches[pageIndex % PAGE_LATCH_STRIPES];
+        }
+
+        public byte getPageCodec() {
+            return pageCodec;
+        }
+
+        public int getCompressionLevel() {
+            return compressionLevel;
+        }
+
         public void setSerializationManager(SerializationManager serializationManager) {
             this.serializationManager = serializationManager;
         }
@@ -0,0 +1,124 @@
+package model;
+
+import java.util.Hashtable;
+import java.util.Set;
+
+// Compiled metadata of a table kept in memory by MetaDataManager.
+// Columns keep the order of the metadata file, min and max are already parsed to the column type.
+public class TableSchema {
+    private final String tableName;
+    private final String clusterKeyName;
+    private final String[] columnNames;
+    private final String[] columnTypes; // lower case, Example: java.lang.integer
+    private final String[] strMins; // as written in the metadata file
+    private final String[] strMaxs;
+    private final Comparable[] mins;
+    private final Comparable[] maxs;
+    private final String[] indexNames; // "null" if the column has no index
+    private final String[] indexTypes;
+    private final Hashtable<String, Integer> htblColNameIndex; // column name -> column ordinal
+    private final int clusterKeyIndex; // read for every comparison of tuples so it is not looked up
+
+    public TableSchema(String tableName, String clusterKeyName, String[] columnNames, String[] columnTypes,
+                       String[] strMins, String[] strMaxs, Comparable[] mins, Comparable[] maxs,
+                       String[] indexNames, String[] indexTypes) {
+        this.tableName = tableName;
+        this.clusterKeyName = clusterKeyName;
+        this.columnNames = columnNames;
+        this.columnTypes = columnTypes;
+        this.strMins = strMins;
+        this.strMaxs = strMaxs;
+        this.mins = mins;
+        this.maxs = maxs;
+        this.indexNames = indexNames;
+        this.indexTypes = indexTypes;
+
+        this.htblColNameIndex = new Hashtable<>();
+        for (int i = 0; i < columnNames.length; i++)
+            htblColNameIndex.put(columnNames[i], i);
+        this.clusterKeyIndex = getColumnIndex(clusterKeyName);
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public String getClusterKeyName() {
+        return clusterKeyName;
+    }
+
+    public int getColumnsCount() {
+        return columnNames.length;
+    }
+
+    // returns the ordinal of the column, -1 if the column does not exist
+    public int getColumnIndex(String colName) {
+        Integer index = htblColNameIndex.get(colName);
+        return index == null ? -1 : index;
+    }
+
+    public boolean hasColumn(String colName) {
+        return htblColNameIndex.containsKey(colName);
+    }
+
+    public boolean hasColumns(Set<String> colNames) {
+        return colNames.size() == columnNames.length && htblColNameIndex.keySet().containsAll(colNames);
+    }
+
+    public String getColumnName(int columnIndex) {
+        return columnNames[columnIndex];
+    }
+
+    public String getColumnType(int columnIndex) {
+        return columnTypes[columnIndex];
+    }
+
+    public String getColumnType(String colName) {
+        int index = getColumnIndex(colName);
+        return index == -1 ? null : columnTypes[index];
+    }
+
+    public int getClusterKeyIndex() {
+        return clusterKeyIndex;
+    }
+
+    public String getClusterKeyType() {
+        return columnTypes[getClusterKeyIndex()];
+    }
+
+    public Comparable getMin(int columnIndex) {
+        return mins[columnIndex];
+    }
+
+    public Comparable getMax(int columnIndex) {
+        return maxs[columnIndex];
+    }
+
+    public String getStrMin(int columnIndex) {
+        return strMins[columnIndex];
+    }
+
+    public String getStrMax(int columnIndex) {
+        return strMaxs[columnIndex];
+    }
+
+    public String getIndexName(int columnIndex) {
+        return indexNames[columnIndex];
+    }
+
+    public String getIndexType(int columnIndex) {
+        return indexTypes[columnIndex];
+    }
+
+    public boolean hasIndex(int columnIndex) {
+        return !indexNames[columnIndex].equals("null");
+    }
+
+    // Identifies the column layout, stored in every page so that a page written with another layout is rejected
+    public int getSchemaId() {
+        StringBuilder layout = new StringBuilder(clusterKeyName);
+        for (int i = 0; i < columnNames.length; i++)
+            layout.append(',').append(columnNames[i]).append(':').append(columnTypes[i]);
+        return layout.toString().hashCode();
+    }
+}
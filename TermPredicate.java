@@ -0,0 +1,59 @@
+package query;
+
+import model.SQLTerm;
+import model.Tuple;
+
+// One SQLTerm: column operator value
+public class TermPredicate extends Predicate {
+    public static final String[] OPERATORS = {"=", "!=", ">", ">=", "<", "<="};
+
+    private final String colName;
+    private final String operator;
+    private final Comparable value;
+
+    public TermPredicate(SQLTerm sqlTerm) {
+        this.colName = sqlTerm.getColumnName();
+        this.operator = sqlTerm.getOperator();
+        this.value = (Comparable) sqlTerm.getValue();
+    }
+
+    public boolean evaluate(Tuple tuple) {
+        Comparable tupleValue = (Comparable) tuple.getColValue(colName);
+        if (tupleValue == null)
+            return false;
+
+        return isSatisfiedBy(tupleValue.compareTo(value));
+    }
+
+    // comparison is tupleValue.compareTo(value)
+    public boolean isSatisfiedBy(int comparison) {
+        switch (operator) {
+            case "=":
+                return comparison == 0;
+            case "!=":
+                return comparison != 0;
+            case ">":
+                return comparison > 0;
+            case ">=":
+                return comparison >= 0;
+            case "<":
+                return comparison < 0;
+            case "<=":
+                return comparison <= 0;
+            default:
+                return false;
+        }
+    }
+
+    public String getColName() {
+        return colName;
+    }
+
+    public String getOperator() {
+        return operator;
+    }
+
+    public Comparable getValue() {
+        return value;
+    }
+}
@@ -1,27 +1,54 @@
     package model;
 
-    import java.io.Serializable;
     import java.util.Hashtable;
 
-    public class Tuple implements Comparable, Serializable {
-        private final String clusterKeyName;
-        private Hashtable<String, Object> htblColNameValue;
+    // Values are kept in an array in the column order of the TableSchema, the schema is shared by all tuples
+    // of the table so a tuple only holds its values. Missing columns are null.
+    public class Tuple implements Comparable {
+        private final TableSchema schema;
+        private final Object[] values; // values[i] is the value of column i of the schema
 
-        public Tuple(String clusterKeyName, Hashtable<String, Object> htblColNameValue) {
-            this.clusterKeyName = clusterKeyName;
-            this.htblColNameValue = htblColNameValue;
+        public Tuple(TableSchema schema, Hashtable<String, Object> htblColNameValue) {
+            this.schema = schema;
+            this.values = new Object[schema.getColumnsCount()];
+            for (int i = 0; i < values.length; i++)
+                values[i] = htblColNameValue.get(schema.getColumnName(i));
+        }
+
+        // Used when reading a page from disk, values must be in the column order of the schema
+        public Tuple(TableSchema schema, Object[] values) {
+            this.schema = schema;
+            this.values = values;
         }
 
         public String getClusterKeyName() {
-            return clusterKeyName;
+            return schema.getClusterKeyName();
+        }
+
+        public TableSchema getSchema() {
+            return schema;
         }
 
         public Object getColValue(String colName) {
-            return htblColNameValue.get(colName);
+            int columnIndex = schema.getColumnIndex(colName);
+            return columnIndex == -1 ? null : values[columnIndex];
+        }
+
+        public Object getValue(int columnIndex) {
+            return values[columnIndex];
+        }
+
+        // Copy of the tuple with the given columns replaced, tuples in pages are never changed in place
+        // so a reader that already copied the tuples of a page keeps seeing the old values
+        public Tuple withValues(Hashtable<String, Object> htblColNameValue) {
+            Object[] newValues = values.clone();
+            for (String colName : htblColNameValue.keySet())
+                newValues[schema.getColumnIndex(colName)] = htblColNameValue.get(colName);
+            return new Tuple(schema, newValues);
         }
 
         public Object getClusterKeyValue() {
-            return htblColNameValue.get(clusterKeyName);
+            return values[schema.getClusterKeyIndex()];
         }
 
         @Override
@@ -34,7 +61,7 @@
                 otherValue = (Comparable) ((Tuple) o).getClusterKeyValue();
             }
             else {
-                // If o is not a tuple, it is a clusterKeyValue
+                // If o is not a tuple, it is a clusterKeyValue, pages search their tuples by clusterKeyValue directly
                 thisValue = (Comparable) this.getClusterKeyValue();
                 otherValue = (Comparable) o;
             }
@@ -50,13 +77,14 @@
         }
 
 
-        // Creates a tuple with clusterKeyValue as needed to help sort based on ClusterKeyColumn using compareTo
-        public static Tuple createInstance(Object clusterKeyValue) {
-            Hashtable<String, Object> htblColNameValue = new Hashtable<>();
-            htblColNameValue.put("whateverKey", clusterKeyValue);
-
-            return new Tuple("whateverKey", htblColNameValue);
-
+        // returns true if the tuple has all the column values, used to find the tuples to delete
+        public boolean matches(Hashtable<String, Object> htblColNameValue) {
+            for (String colName : htblColNameValue.keySet()) {
+                Comparable value = (Comparable) this.getColValue(colName);
+                if (value == null || value.compareTo(htblColNameValue.get(colName)) != 0)
+                    return false;
+            }
+            return true;
         }
 
     }
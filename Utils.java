@@ -3,25 +3,33 @@ package Utils;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Properties;
 import java.util.Vector;
 
 public class Utils {
-    private static final String TABLES_DATA_FOLDER = "src/main/resources/Tables/";
-    private static final String PAGES_TABLE_FOLDER = "Pages/";
+    // All files are in the data folder: the config file, the metadata folder and the Tables folder
+    public static final String DATA_FOLDER_PROPERTY = "dbapp.data.dir";
+    private static final String DEFAULT_DATA_FOLDER = "src/main/resources/";
+    private static final String CONFIG_FILE = "DBApp.config";
+    private static final String META_DATA_FOLDER = "metadata/";
+    private static final String TABLES_DATA_FOLDER = "Tables/";
+    private static Properties config;
+    // compares an element of the list with the searched object, Example: a Tuple with a clusterKeyValue
+    private static final Comparator<Comparable> LIST_ELEMENT_COMPARATOR = new Comparator<Comparable>() {
+        public int compare(Comparable t1, Comparable t2)
+        {
+            return t1.compareTo(t2);
+        }
+    };
 
     // returns the index of Object, if it is in the list; otherwise, (-(insertion point if it were to be + 1)).
     public static int binarySearch(Vector<Comparable> list, Comparable o) {
-        Comparator<Comparable> c = new Comparator<Comparable>() {
-            public int compare(Comparable t1, Comparable t2)
-            {
-                return t1.compareTo(t2);
-            }
-        };
-
-        int index = Collections.binarySearch(list, o, c);
+        int index = Collections.binarySearch(list, o, LIST_ELEMENT_COMPARATOR);
         return index;
     }
 
@@ -32,11 +40,96 @@ public class Utils {
     }
 
     public static int getMaxRowsCountInPage() throws IOException {
-        Properties prop = new Properties();
-        FileInputStream configPath = new FileInputStream("src/main/resources/DBApp.config");
-        prop.load(configPath);
+        return Integer.parseInt(getConfig().getProperty("MaximumRowsCountInTablePage"));
+    }
+
+    // Number of pages the buffer pool keeps in memory, defaults to 64 if not set in the config
+    public static int getBufferPoolSize() throws IOException {
+        return Integer.parseInt(getConfig().getProperty("MaximumPagesInBufferPool", "64"));
+    }
+
+    // Fraction of MaximumRowsCountInTablePage filled by batch inserts, defaults to 1 if not set in the config
+    public static double getBulkLoadFillFactor() throws IOException {
+        double fillFactor = Double.parseDouble(getConfig().getProperty("BulkLoadFillFactor", "1.0"));
+        return Math.min(1.0, Math.max(0.0, fillFactor));
+    }
+
+    // Maximum number of keys in a B+ tree node, defaults to 64 if not set in the config
+    public static int getBPlusTreeOrder() throws IOException {
+        return Integer.parseInt(getConfig().getProperty("MaximumKeysCountInBPlusTreeNode", "64"));
+    }
+
+    // Maximum number of distinct points in an Octree leaf, defaults to 16 if not set in the config
+    public static int getOctreeNodeCapacity() throws IOException {
+        return Integer.parseInt(getConfig().getProperty("MaximumEntriesinOctreeNode", "16"));
+    }
+
+    // Number of threads reading pages in parallel during a scan, defaults to 1 (no parallel scan) if not set in the config
+    public static int getParallelScanThreads() throws IOException {
+        return Math.max(1, Integer.parseInt(getConfig().getProperty("ParallelScanThreads", "1")));
+    }
+
+    // Logs every operation before it is done so it can be redone after a crash, defaults to true if not set in the config
+    public static boolean isWriteAheadLogEnabled() throws IOException {
+        return Boolean.parseBoolean(getConfig().getProperty("WriteAheadLogEnabled", "true"));
+    }
+
+    // Size of the log in bytes that triggers a checkpoint, defaults to 16 MB if not set in the config
+    public static long getCheckpointLogSize() throws IOException {
+        return Long.parseLong(getConfig().getProperty("CheckpointLogSize", "16777216"));
+    }
 
-        return Integer.parseInt(prop.getProperty("MaximumRowsCountInTablePage"));
+    // Initial size in bytes of a page slot in the page segment of a table, defaults to 16 KB if not set in the config.
+    // Slots of a table grow when a page does not fit
+    public static int getPageSlotSize() throws IOException {
+        return Math.max(64, Integer.parseInt(getConfig().getProperty("PageSlotSize", "16384")));
+    }
+
+    // Maximum number of distinct values of a String column in a page for the column to be dictionary encoded,
+    // defaults to 32 if not set in the config, 0 disables dictionary encoding
+    public static int getMaximumDictionarySize() throws IOException {
+        return Math.min(65536, Math.max(0, Integer.parseInt(getConfig().getProperty("MaximumDictionarySize", "32"))));
+    }
+
+    // Maximum number of characters of a String value, longer values are rejected before any page is changed,
+    // defaults to 1048576 if not set in the config
+    public static int getMaximumStringLength() throws IOException {
+        return Math.max(1, Integer.parseInt(getConfig().getProperty("MaximumStringLength", "1048576")));
+    }
+
+    // False positive rate of the Bloom filters of the pages, 0 to not build them
+    public static double getBloomFilterFalsePositiveRate() throws IOException {
+        double rate = Double.parseDouble(getConfig().getProperty("BloomFilterFalsePositiveRate", "0.01"));
+        return rate > 0 && rate < 1 ? rate : 0;
+    }
+
+    // Codec pages of new tables are compressed with when createTable is not given one: none, lz, deflate or
+    // deflate:level, defaults to none if not set in the config
+    public static String getPageCompression() throws IOException {
+        return getConfig().getProperty("PageCompression", "none").trim();
+    }
+
+    // Number of operations on one table AsyncDBApp runs or queues at once, defaults to 1024 if not set in the config
+    public static int getAsyncMaxPendingRequests() throws IOException {
+        return Math.max(1, Integer.parseInt(getConfig().getProperty("AsyncMaxPendingRequests", "1024")));
+    }
+
+    // Maximum number of queued single row inserts AsyncDBApp inserts as one batch, defaults to 256 if not set in the config
+    public static int getAsyncMaxBatchSize() throws IOException {
+        return Math.max(1, Integer.parseInt(getConfig().getProperty("AsyncMaxBatchSize", "256")));
+    }
+
+    // The config file is read once and kept in memory
+    private static synchronized Properties getConfig() throws IOException {
+        if (config == null) {
+            Properties prop = new Properties();
+            FileInputStream configPath = new FileInputStream(getDataFolderPath() + CONFIG_FILE);
+            prop.load(configPath);
+            configPath.close();
+
+            config = prop;
+        }
+        return config;
     }
 
     // Helper function to delete a folder
@@ -54,20 +147,38 @@ public class Utils {
         folder.mkdirs();
     }
 
-    public static String getTableFolderPath(String strTableName) {
-        return TABLES_DATA_FOLDER + strTableName + "/";
+    // Waits until the entries of the folder are on disk, Example: a file renamed into it
+    public static void syncFolder(String folderPath) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(folderPath), StandardOpenOption.READ);
+        try {
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
     }
 
-    public static String getTableFilePath(String strTableName) {
-        return TABLES_DATA_FOLDER + strTableName + "/" + strTableName + ".ser";
+    // src/main/resources/ unless the dbapp.data.dir system property is set, Example: benchmarks use a temporary folder.
+    // The property must be set before the config is read or a DBApp is initialized
+    public static String getDataFolderPath() {
+        String dataFolder = System.getProperty(DATA_FOLDER_PROPERTY, DEFAULT_DATA_FOLDER);
+        return dataFolder.endsWith("/") ? dataFolder : dataFolder + "/";
     }
 
-    public static String getPageFolderPath(String strTableName) {
-        return TABLES_DATA_FOLDER + strTableName + "/" + PAGES_TABLE_FOLDER;
+    public static String getMetaDataFolderPath() {
+        return getDataFolderPath() + META_DATA_FOLDER;
     }
 
-    public static String getPageFilePath(String strTableName, int pageIndex) {
-        return TABLES_DATA_FOLDER + strTableName + "/" + PAGES_TABLE_FOLDER + pageIndex + ".ser";
+    public static String getTablesFolderPath() {
+        return getDataFolderPath() + TABLES_DATA_FOLDER;
+    }
+
+    public static String getTableFolderPath(String strTableName) {
+        return getTablesFolderPath() + strTableName + "/";
     }
 
+    public static String getTableFilePath(String strTableName) {
+        return getTableFolderPath(strTableName) + strTableName + ".ser";
+    }
+
+
 }
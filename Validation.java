@@ -1,17 +1,14 @@
 package Utils;
 
-import java.io.File;
+import model.TableSchema;
+
+import java.io.IOException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
 
 public class Validation {
 
-    public static boolean isTableExists(String strTableName) {
-        String tableFile = Utils.getTableFilePath(strTableName);
-        return new File(tableFile).exists();
-    }
-
     public static boolean areAllowedDataTypes(Hashtable<String, String> htblColNameType) {
         String[] arrAllowedDataTypes = {"java.lang.string", "java.lang.integer", "java.lang.double", "java.util.date"};
         List<String> allowedDataTypes = Arrays.asList(arrAllowedDataTypes);
@@ -22,18 +19,29 @@ public class Validation {
         return true;
     }
 
-    public static boolean validateSchema(Hashtable<String, Object> htblColNameValue,
-                                         Hashtable<String, Hashtable<String, String>> htblColNameMetaData) throws ParseException {
+    // Uses the min and max already parsed in the schema, does not read the metadata file
+    public static boolean validateSchema(Hashtable<String, Object> htblColNameValue, TableSchema schema) {
         for (String colName : htblColNameValue.keySet()) {
-            Hashtable<String, String> colMetaData = htblColNameMetaData.get(colName);
-            String type = colMetaData.get("ColumnType").toLowerCase();
+            int colIndex = schema.getColumnIndex(colName);
+            if (colIndex == -1)
+                return false;
+
             Object value = htblColNameValue.get(colName);
-            if (!isNeededType(value, type) || !isValidValue(value, colMetaData.get("Min"), colMetaData.get("Max")))
+            if (!isNeededType(value, schema.getColumnType(colIndex)) || !isValidValue(value, schema.getMin(colIndex), schema.getMax(colIndex)))
                 return false;
         }
         return true;
     }
 
+    // Checked apart from validateSchema since the limit comes from the config
+    public static boolean areValidLengths(Hashtable<String, Object> htblColNameValue) throws IOException {
+        int maxLength = Utils.getMaximumStringLength();
+        for (Object value : htblColNameValue.values())
+            if (isString(value) && ((String) value).length() > maxLength)
+                return false;
+        return true;
+    }
+
     public static boolean validateMinMax(Hashtable<String, String> htblColNameType, Hashtable<String, String> htblColNameMin,
                                          Hashtable<String, String> htblColNameMax) throws ParseException {
         for (String colName : htblColNameType.keySet()) {
@@ -53,6 +61,11 @@ public class Validation {
 
 
 
+    // type is lower case, Example: java.lang.integer
+    public static boolean isValidType(Object value, String type) {
+        return isNeededType(value, type);
+    }
+
     // Case-insensitive
     private static boolean isNeededType(Object obj, String type) {
         if (isString(obj) && type.equals("java.lang.string"))
@@ -80,37 +93,14 @@ public class Validation {
         return false;
     }
 
-    private static boolean isValidValue(Object value, String min, String max) throws ParseException {
-        Comparable compValue = getComparable(value);
-        if (isString(value))
-            return compValue.compareTo(min) >= 0 && ((String) value).compareTo(max) <= 0;
-        if (isInteger(value))
-            return compValue.compareTo(Integer.parseInt(min)) >= 0 && ((Integer) value).compareTo(Integer.parseInt(max)) <= 0;
-        if (isDouble(value))
-            return compValue.compareTo(Double.parseDouble(min)) >= 0 && ((Double) value).compareTo(Double.parseDouble(max)) <= 0;
-        if (isDate(value)) {
-            SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
-            try {
-                return compValue.compareTo(format.parse(min)) >= 0 && compValue.compareTo(format.parse(max)) <= 0;
-            } catch (ParseException e) {
-            }
-        }
-        return false;
-    }
-
-    private static Comparable getComparable(Object obj) throws ParseException {
-        if (isString(obj))
-            return (String) obj;
-        if (isInteger(obj))
-            return (Integer) obj;
-        if (isDouble(obj))
-            return (Double) obj;
-        if (isDate(obj))
-            return (Date) obj;
-        return null;
+    // value must already be of the column type
+    private static boolean isValidValue(Object value, Comparable min, Comparable max) {
+        Comparable compValue = (Comparable) value;
+        return compValue.compareTo(min) >= 0 && compValue.compareTo(max) <= 0;
     }
 
-    private static Comparable getComparable(String obj, String type) throws ParseException {
+    // Parses a value written in the metadata file to the column type
+    public static Comparable getComparable(String obj, String type) throws ParseException {
         if (type.equals("java.lang.string"))
             return obj;
         if (type.equals("java.lang.integer"))
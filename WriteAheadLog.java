@@ -0,0 +1,324 @@
+package Utils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.Vector;
+import java.util.zip.CRC32;
+
+// Append only log of the logical operations done on the tables since the last checkpoint.
+// An operation is logged before it changes any page, so the page and table files on disk always hold the state
+// of the last checkpoint and replaying the log on top of them redoes everything that was lost.
+// The log is a sequence of numbered files, <logPath>.<number>, records are appended to the last one. A checkpoint
+// starts a new file when it takes its snapshot and deletes the older files once it is installed.
+// Record: length, crc32 of the content, content. A record cut by a crash fails its crc and ends the log, the last
+// file is cut back to its last complete record when the log is opened so that new records are not written after it.
+// Strings in a record are length prefixed as in the page files, see PageFormat.writeString.
+// Group commit: a writer appends its record to a buffer then waits for it to be on disk, the first waiting writer
+// writes and fsyncs the buffer for all writers that appended meanwhile, so concurrent writers share one fsync.
+// If a write or fsync fails the records of the buffer may not be on disk, so all waiting writers fail and the log
+// refuses every later record: the log must be reopened, which replays only the records that are complete on disk.
+public class WriteAheadLog {
+    public static final byte INSERT = 1;
+    public static final byte INSERT_BATCH = 2;
+    public static final byte DELETE = 3;
+    public static final byte UPDATE = 5; // the row holds the clusterKey and the new values
+    public static final byte UPDATE_BATCH = 6;
+    public static final byte DELETE_RANGE = 7; // the first row holds the min clusterKey and the second the max, empty if unbounded
+
+    private final String logPath;
+    private final ByteArrayOutputStream buffer; // records appended but not yet written
+    private final Object syncLock; // held by the writer doing the fsync
+    private FileChannel channel; // the last log file
+    private long fileNumber; // number of the last log file
+    private long appendedCount; // number of records appended since the log was opened
+    private long syncedCount; // number of records on disk
+    private long size; // size of the last log file in bytes
+    private IOException failure; // the failed write or fsync, set once
+
+    public WriteAheadLog(String logPath) throws IOException {
+        this.logPath = logPath;
+        this.buffer = new ByteArrayOutputStream();
+        this.syncLock = new Object();
+        Vector<Long> fileNumbers = getFileNumbers();
+        this.fileNumber = fileNumbers.isEmpty() ? 1 : fileNumbers.lastElement();
+        open();
+    }
+
+
+    // Logs an insert, a batch insert or a delete and returns once the record is on disk.
+    // rows holds the inserted rows, or the conditions of a delete as its only element
+    public void log(byte type, String tableName, Vector<Hashtable<String, Object>> rows) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(type);
+        PageFormat.writeString(out, tableName);
+        out.writeInt(rows.size());
+        for (Hashtable<String, Object> row : rows) {
+            out.writeInt(row.size());
+            for (Map.Entry<String, Object> colNameValue : row.entrySet()) {
+                PageFormat.writeString(out, colNameValue.getKey());
+                writeValue(out, colNameValue.getValue());
+            }
+        }
+        out.close();
+
+        append(bytes.toByteArray());
+    }
+
+    // Reads all complete records of all log files in the order they were logged
+    public Vector<LogRecord> readAll() throws IOException {
+        synchronized (syncLock) {
+            Vector<LogRecord> records = new Vector<>();
+            for (long number : getFileNumbers()) {
+                FileChannel fileChannel = number == fileNumber ? channel
+                        : FileChannel.open(Paths.get(getFilePath(number)), StandardOpenOption.READ);
+                try {
+                    readRecords(fileChannel, records);
+                } finally {
+                    if (fileChannel != channel)
+                        fileChannel.close();
+                }
+            }
+            return records;
+        }
+    }
+
+    // Starts a new log file and returns its number. Must be called while no operation is logged, the records of the
+    // older files are the ones done before the call
+    public long startFile() throws IOException {
+        synchronized (syncLock) {
+            channel.force(true);
+            channel.close();
+            fileNumber++;
+            open();
+            return fileNumber;
+        }
+    }
+
+    // Deletes the log files before fileNumber, their operations are in the installed checkpoint
+    public void deleteFilesBefore(long fileNumber) throws IOException {
+        synchronized (syncLock) {
+            for (long number : getFileNumbers())
+                if (number < fileNumber && !new File(getFilePath(number)).delete())
+                    throw new IOException("Failed to delete log file " + getFilePath(number));
+        }
+    }
+
+    // Size of the last log file, records in older files are already in a checkpoint being written
+    public long getSize() {
+        synchronized (syncLock) {
+            return size;
+        }
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+
+
+    // Helper methods
+    private void open() throws IOException {
+        channel = FileChannel.open(Paths.get(getFilePath(fileNumber)), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        size = readRecords(channel, new Vector<>());
+        if (size < channel.size()) { // a record cut by a crash
+            channel.truncate(size);
+            channel.force(true);
+        }
+        channel.position(size);
+    }
+
+    private String getFilePath(long number) {
+        return logPath + "." + number;
+    }
+
+    // numbers of the log files in increasing order
+    private Vector<Long> getFileNumbers() {
+        File logFile = new File(logPath);
+        String prefix = logFile.getName() + ".";
+        Vector<Long> numbers = new Vector<>();
+        String[] fileNames = logFile.getAbsoluteFile().getParentFile().list();
+        if (fileNames != null)
+            for (String fileName : fileNames)
+                if (fileName.startsWith(prefix) && fileName.substring(prefix.length()).matches("[0-9]+"))
+                    numbers.add(Long.parseLong(fileName.substring(prefix.length())));
+        Collections.sort(numbers);
+        return numbers;
+    }
+
+    // Adds the complete records of the file to records and returns the size of the file up to the last of them
+    private static long readRecords(FileChannel fileChannel, Vector<LogRecord> records) throws IOException {
+        byte[] data = new byte[(int) fileChannel.size()];
+        ByteBuffer byteBuffer = ByteBuffer.wrap(data);
+        while (byteBuffer.hasRemaining())
+            if (fileChannel.read(byteBuffer, byteBuffer.position()) < 0)
+                break;
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        int remaining = data.length;
+        while (remaining >= 8) {
+            int length = in.readInt();
+            int checksum = in.readInt();
+            if (length < 0 || length > remaining - 8)
+                break;
+
+            byte[] content = new byte[length];
+            in.readFully(content);
+            if (getChecksum(content) != checksum)
+                break;
+
+            records.add(readRecord(content));
+            remaining -= 8 + length;
+        }
+        return data.length - remaining;
+    }
+
+    private void append(byte[] content) throws IOException {
+        long recordNumber;
+        synchronized (this) {
+            if (failure != null)
+                throw new IOException("Write ahead log failed, it must be reopened", failure);
+            DataOutputStream out = new DataOutputStream(buffer);
+            out.writeInt(content.length);
+            out.writeInt(getChecksum(content));
+            out.write(content);
+            recordNumber = ++appendedCount;
+        }
+        commit(recordNumber);
+    }
+
+    // Waits until the record is on disk, writing and syncing the buffer if no other writer did it.
+    // The buffer is only emptied once its records are on disk
+    private void commit(long recordNumber) throws IOException {
+        synchronized (syncLock) {
+            if (syncedCount >= recordNumber) // written by the fsync of another writer
+                return;
+
+            byte[] data;
+            long count;
+            synchronized (this) {
+                if (failure != null) // the record was in the buffer of the failed write
+                    throw new IOException("Write ahead log failed, it must be reopened", failure);
+                data = buffer.toByteArray();
+                count = appendedCount;
+            }
+
+            try {
+                ByteBuffer byteBuffer = ByteBuffer.wrap(data);
+                while (byteBuffer.hasRemaining())
+                    channel.write(byteBuffer, size + byteBuffer.position());
+                channel.force(false);
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                    buffer.reset();
+                }
+                try { // a partly written record would end every later replay at the records before it
+                    channel.truncate(size);
+                } catch (IOException truncateFailure) {
+                    e.addSuppressed(truncateFailure);
+                }
+                throw e;
+            }
+
+            synchronized (this) { // records appended meanwhile stay in the buffer
+                byte[] appended = buffer.toByteArray();
+                buffer.reset();
+                buffer.write(appended, data.length, appended.length - data.length);
+            }
+            size += data.length;
+            syncedCount = count;
+        }
+    }
+
+    private static int getChecksum(byte[] content) {
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        return (int) crc.getValue();
+    }
+
+    private static LogRecord readRecord(byte[] content) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(content));
+        byte type = in.readByte();
+        String tableName = PageFormat.readString(in);
+        int rowsCount = in.readInt();
+        Vector<Hashtable<String, Object>> rows = new Vector<>(rowsCount);
+        for (int i = 0; i < rowsCount; i++) {
+            int colsCount = in.readInt();
+            Hashtable<String, Object> row = new Hashtable<>();
+            for (int j = 0; j < colsCount; j++) {
+                String colName = PageFormat.readString(in);
+                row.put(colName, readValue(in));
+            }
+            rows.add(row);
+        }
+        return new LogRecord(type, tableName, rows);
+    }
+
+    // Values are written with a tag of their type since a record is read without the table schema
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value instanceof Integer) {
+            out.writeByte('I');
+            out.writeInt((Integer) value);
+        } else if (value instanceof Double) {
+            out.writeByte('D');
+            out.writeDouble((Double) value);
+        } else if (value instanceof Date) {
+            out.writeByte('T');
+            out.writeLong(((Date) value).getTime());
+        } else if (value instanceof String) {
+            out.writeByte('S');
+            PageFormat.writeString(out, (String) value);
+        } else
+            throw new IOException("Unsupported value type " + value.getClass().getName());
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case 'I':
+                return in.readInt();
+            case 'D':
+                return in.readDouble();
+            case 'T':
+                return new Date(in.readLong());
+            case 'S':
+                return PageFormat.readString(in);
+            default:
+                throw new IOException("Invalid value tag " + tag);
+        }
+    }
+
+
+    public static class LogRecord {
+        private final byte type;
+        private final String tableName;
+        private final Vector<Hashtable<String, Object>> rows;
+
+        private LogRecord(byte type, String tableName, Vector<Hashtable<String, Object>> rows) {
+            this.type = type;
+            this.tableName = tableName;
+            this.rows = rows;
+        }
+
+        public byte getType() {
+            return type;
+        }
+
+        public String getTableName() {
+            return tableName;
+        }
+
+        public Vector<Hashtable<String, Object>> getRows() {
+            return rows;
+        }
+
+    }
+}
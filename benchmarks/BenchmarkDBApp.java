@@ -0,0 +1,25 @@
+package benchmarks;
+
+import exceptions.DBAppException;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.Hashtable;
+import java.util.List;
+
+// The DBApp methods used by DBAppBenchmark. JMH needs benchmarks in a package and DBApp is in the default package,
+// which can not be imported, so DBAppBenchmark calls DBApp through DBAppAdapter, see BenchmarkData.newDBApp
+public interface BenchmarkDBApp {
+    void init() throws IOException;
+
+    void createTable(String strTableName, String strClusteringKeyColumn, Hashtable<String, String> htblColNameType,
+                     Hashtable<String, String> htblColNameMin, Hashtable<String, String> htblColNameMax) throws DBAppException, IOException, ParseException;
+
+    void insertIntoTable(String strTableName, Hashtable<String, Object> htblColNameValue) throws DBAppException, IOException, ParseException;
+
+    void insertIntoTable(String strTableName, List<Hashtable<String, Object>> lstColNameValue) throws DBAppException, IOException, ParseException;
+
+    void deleteFromTable(String strTableName, Hashtable<String, Object> htblColNameValue) throws DBAppException, IOException;
+
+    void flush() throws IOException;
+}
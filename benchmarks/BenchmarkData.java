@@ -0,0 +1,117 @@
+package benchmarks;
+
+import Utils.MetaDataManager;
+import Utils.Utils;
+import exceptions.DBAppException;
+import model.TableSchema;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.text.ParseException;
+import java.util.Hashtable;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Vector;
+
+// Setup shared by the benchmarks: a temporary data folder with its own config, and the rows of a Student table
+// (id Integer clustering key, name String, gpa Double). The config is read once per JVM, so benchmarks must run forked.
+public class BenchmarkData {
+    public static final String CLUSTER_KEY_NAME = "id";
+
+    // Creates the data folder and its config, and makes the application use it instead of src/main/resources
+    public static File createDataFolder(int maximumRowsCountInTablePage) throws IOException {
+        File dataFolder = Files.createTempDirectory("dbapp-benchmark").toFile();
+
+        Properties config = new Properties();
+        config.setProperty("MaximumRowsCountInTablePage", String.valueOf(maximumRowsCountInTablePage));
+        FileOutputStream configOut = new FileOutputStream(new File(dataFolder, "DBApp.config"));
+        config.store(configOut, "benchmark");
+        configOut.close();
+
+        System.setProperty(Utils.DATA_FOLDER_PROPERTY, dataFolder.getPath());
+        return dataFolder;
+    }
+
+    public static void deleteDataFolder(File dataFolder) {
+        System.clearProperty(Utils.DATA_FOLDER_PROPERTY);
+        Utils.deleteFolder(dataFolder);
+    }
+
+    // A new DBApp, not initialized yet
+    public static BenchmarkDBApp newDBApp() throws ReflectiveOperationException {
+        return (BenchmarkDBApp) Class.forName("DBAppAdapter").getDeclaredConstructor().newInstance();
+    }
+
+    public static void createTable(BenchmarkDBApp dbApp, String strTableName) throws DBAppException, IOException, ParseException {
+        dbApp.createTable(strTableName, CLUSTER_KEY_NAME, getColNameType(), getColNameMin(), getColNameMax());
+    }
+
+    public static TableSchema createTableSchema(MetaDataManager metaDataManager, String strTableName) throws DBAppException, IOException {
+        metaDataManager.createTableMetaData(strTableName, CLUSTER_KEY_NAME, getColNameType(), getColNameMin(), getColNameMax());
+        return metaDataManager.getTableSchema(strTableName);
+    }
+
+    public static Hashtable<String, Object> getRow(int id) {
+        Hashtable<String, Object> htblColNameValue = new Hashtable<>();
+        htblColNameValue.put("id", id);
+        htblColNameValue.put("name", "Student" + (id % 100));
+        htblColNameValue.put("gpa", 0.7 + (id % 44) / 10.0);
+        return htblColNameValue;
+    }
+
+    public static Vector<Hashtable<String, Object>> getRows(int[] ids) {
+        Vector<Hashtable<String, Object>> rows = new Vector<>(ids.length);
+        for (int id : ids)
+            rows.add(getRow(id));
+        return rows;
+    }
+
+    // 0, 2, 4, ... so that odd ids fall between existing rows
+    public static int[] getSequentialIds(int count) {
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++)
+            ids[i] = 2 * i;
+        return ids;
+    }
+
+    // Same ids as getSequentialIds in a fixed random order
+    public static int[] getRandomIds(int count) {
+        int[] ids = getSequentialIds(count);
+        Random random = new Random(42);
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int id = ids[i];
+            ids[i] = ids[j];
+            ids[j] = id;
+        }
+        return ids;
+    }
+
+
+    // Helper methods
+    private static Hashtable<String, String> getColNameType() {
+        Hashtable<String, String> htblColNameType = new Hashtable<>();
+        htblColNameType.put("id", "java.lang.Integer");
+        htblColNameType.put("name", "java.lang.String");
+        htblColNameType.put("gpa", "java.lang.Double");
+        return htblColNameType;
+    }
+
+    private static Hashtable<String, String> getColNameMin() {
+        Hashtable<String, String> htblColNameMin = new Hashtable<>();
+        htblColNameMin.put("id", "0");
+        htblColNameMin.put("name", "A");
+        htblColNameMin.put("gpa", "0.7");
+        return htblColNameMin;
+    }
+
+    private static Hashtable<String, String> getColNameMax() {
+        Hashtable<String, String> htblColNameMax = new Hashtable<>();
+        htblColNameMax.put("id", "2147483647");
+        htblColNameMax.put("name", "ZZZZZZZZZZZ");
+        htblColNameMax.put("gpa", "5.0");
+        return htblColNameMax;
+    }
+}
@@ -0,0 +1,37 @@
+import benchmarks.BenchmarkDBApp;
+import exceptions.DBAppException;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.Hashtable;
+import java.util.List;
+
+// DBApp seen as a BenchmarkDBApp, in the default package like DBApp
+public class DBAppAdapter implements BenchmarkDBApp {
+    private final DBApp dbApp = new DBApp();
+
+    public void init() throws IOException {
+        dbApp.init();
+    }
+
+    public void createTable(String strTableName, String strClusteringKeyColumn, Hashtable<String, String> htblColNameType,
+                            Hashtable<String, String> htblColNameMin, Hashtable<String, String> htblColNameMax) throws DBAppException, IOException, ParseException {
+        dbApp.createTable(strTableName, strClusteringKeyColumn, htblColNameType, htblColNameMin, htblColNameMax);
+    }
+
+    public void insertIntoTable(String strTableName, Hashtable<String, Object> htblColNameValue) throws DBAppException, IOException, ParseException {
+        dbApp.insertIntoTable(strTableName, htblColNameValue);
+    }
+
+    public void insertIntoTable(String strTableName, List<Hashtable<String, Object>> lstColNameValue) throws DBAppException, IOException, ParseException {
+        dbApp.insertIntoTable(strTableName, lstColNameValue);
+    }
+
+    public void deleteFromTable(String strTableName, Hashtable<String, Object> htblColNameValue) throws DBAppException, IOException {
+        dbApp.deleteFromTable(strTableName, htblColNameValue);
+    }
+
+    public void flush() throws IOException {
+        dbApp.flush();
+    }
+}
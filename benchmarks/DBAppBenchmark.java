@@ -0,0 +1,126 @@
+package benchmarks;
+
+import Utils.Utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.Hashtable;
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+// JMH benchmarks of DBApp inserts and deletes, every invocation works on a new table of tableSize rows.
+// Runs in a temporary data folder, see BenchmarkData. Example: java -jar benchmarks/target/benchmarks.jar DBAppBenchmark -p tableSize=10000
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DBAppBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Database {
+        @Param({"200", "1000"})
+        public int maximumRowsCountInTablePage;
+
+        @Param({"10000", "100000"})
+        public int tableSize;
+
+        private File dataFolder;
+        private BenchmarkDBApp dbApp;
+        private Vector<Hashtable<String, Object>> sequentialRows;
+        private Vector<Hashtable<String, Object>> randomRows;
+        private int tablesCount; // tables can not be dropped, every invocation creates a new one
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            dataFolder = BenchmarkData.createDataFolder(maximumRowsCountInTablePage);
+            dbApp = BenchmarkData.newDBApp();
+            dbApp.init();
+
+            sequentialRows = BenchmarkData.getRows(BenchmarkData.getSequentialIds(tableSize));
+            randomRows = BenchmarkData.getRows(BenchmarkData.getRandomIds(tableSize));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            dbApp.flush();
+            BenchmarkData.deleteDataFolder(dataFolder);
+        }
+
+        private String createTable() throws Exception {
+            String strTableName = "Student" + tablesCount++;
+            BenchmarkData.createTable(dbApp, strTableName);
+            return strTableName;
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class EmptyTable {
+        private String tableName;
+
+        @Setup(Level.Invocation)
+        public void setUp(Database database) throws Exception {
+            tableName = database.createTable();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class FullTable {
+        private String tableName;
+
+        @Setup(Level.Invocation)
+        public void setUp(Database database) throws Exception {
+            tableName = database.createTable();
+            database.dbApp.insertIntoTable(tableName, database.sequentialRows);
+        }
+    }
+
+
+    @Benchmark
+    public void insertSequential(Database database, EmptyTable table) throws Exception {
+        for (Hashtable<String, Object> row : database.sequentialRows)
+            database.dbApp.insertIntoTable(table.tableName, row);
+    }
+
+    @Benchmark
+    public void insertRandom(Database database, EmptyTable table) throws Exception {
+        for (Hashtable<String, Object> row : database.randomRows)
+            database.dbApp.insertIntoTable(table.tableName, row);
+    }
+
+    @Benchmark
+    public void insertBatch(Database database, EmptyTable table) throws Exception {
+        database.dbApp.insertIntoTable(table.tableName, database.randomRows);
+    }
+
+    // Deletes a tenth of the rows one by one by clusterKey, in random order
+    @Benchmark
+    public void deleteByClusterKey(Database database, FullTable table) throws Exception {
+        for (int i = 0; i < database.tableSize / 10; i++) {
+            Hashtable<String, Object> htblColNameValue = new Hashtable<>();
+            htblColNameValue.put(BenchmarkData.CLUSTER_KEY_NAME, database.randomRows.get(i).get(BenchmarkData.CLUSTER_KEY_NAME));
+            database.dbApp.deleteFromTable(table.tableName, htblColNameValue);
+        }
+    }
+
+    // Deletes the rows having one gpa, the pages are scanned since gpa has no index
+    @Benchmark
+    public void deleteByColumn(Database database, FullTable table) throws Exception {
+        Hashtable<String, Object> htblColNameValue = new Hashtable<>();
+        htblColNameValue.put("gpa", 2.5);
+        database.dbApp.deleteFromTable(table.tableName, htblColNameValue);
+    }
+}
@@ -0,0 +1,118 @@
+package benchmarks;
+
+import Page.Page;
+import Page.PageReference;
+import Utils.MetaDataManager;
+import Utils.PageFormat;
+import Utils.Utils;
+import model.TableSchema;
+import model.Tuple;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.Hashtable;
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+// JMH benchmarks of the in-memory page operations: binary search of a tuple in a page, insertion into a page,
+// binary search of the page of a clusterKey among the page references of a table of tableSize rows, and a
+// page encoded and decoded as it is written to and read from its page segment.
+// Runs in a temporary data folder, see BenchmarkData. Example: java -jar benchmarks/target/benchmarks.jar PageBenchmark
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PageBenchmark {
+    private static final String TABLE_NAME = "Student";
+    private static final int KEYS_COUNT = 1024; // looked up keys, a power of 2
+
+    @Param({"200", "1000"})
+    public int maximumRowsCountInTablePage;
+
+    @Param({"10000", "100000"})
+    public int tableSize;
+
+    private File dataFolder;
+    private TableSchema schema;
+    private Page page; // full page holding the ids 0, 2, 4, ...
+    private Vector<Comparable> pagesReference; // references of the pages of a table of tableSize rows
+    private int[] pageKeys; // ids in the page, in random order
+    private int[] tableKeys; // ids in the table, in random order
+    private Tuple[] newTuples; // tuples with odd ids, added to the page then removed
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dataFolder = BenchmarkData.createDataFolder(maximumRowsCountInTablePage);
+        schema = BenchmarkData.createTableSchema(new MetaDataManager(), TABLE_NAME);
+
+        page = new Page(TABLE_NAME, 0);
+        for (int id : BenchmarkData.getSequentialIds(maximumRowsCountInTablePage))
+            page.addTuple(new Tuple(schema, BenchmarkData.getRow(id)));
+
+        int pagesCount = (tableSize + maximumRowsCountInTablePage - 1) / maximumRowsCountInTablePage;
+        pagesReference = new Vector<>(pagesCount);
+        for (int i = 0; i < pagesCount; i++) {
+            int min = 2 * i * maximumRowsCountInTablePage;
+            int max = min + 2 * (maximumRowsCountInTablePage - 1);
+            pagesReference.add(new PageReference(TABLE_NAME, i, min, max, maximumRowsCountInTablePage, new Hashtable<>(),
+                    new Hashtable<>(), new Hashtable<>(), new Hashtable<>(), new Hashtable<>()));
+        }
+
+        int[] randomPageIds = BenchmarkData.getRandomIds(maximumRowsCountInTablePage);
+        int[] randomTableIds = BenchmarkData.getRandomIds(tableSize);
+        pageKeys = new int[KEYS_COUNT];
+        tableKeys = new int[KEYS_COUNT];
+        newTuples = new Tuple[KEYS_COUNT];
+        for (int i = 0; i < KEYS_COUNT; i++) {
+            pageKeys[i] = randomPageIds[i % randomPageIds.length];
+            tableKeys[i] = randomTableIds[i % randomTableIds.length];
+            newTuples[i] = new Tuple(schema, BenchmarkData.getRow(pageKeys[i] + 1));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkData.deleteDataFolder(dataFolder);
+    }
+
+
+    @Benchmark
+    public Tuple getTuple() throws Exception {
+        return page.getTuple(pageKeys[next++ & (KEYS_COUNT - 1)]);
+    }
+
+    // The tuple is removed again so that the page keeps its size, both are measured
+    @Benchmark
+    public Tuple addTuple() throws Exception {
+        Tuple tuple = newTuples[next++ & (KEYS_COUNT - 1)];
+        page.addTuple(tuple);
+        return page.removeTuple(tuple.getClusterKeyValue());
+    }
+
+    @Benchmark
+    public int binarySearchPageReference() {
+        return Utils.binarySearch(pagesReference, tableKeys[next++ & (KEYS_COUNT - 1)]);
+    }
+
+    @Benchmark
+    public Page encodeDecodePage() throws Exception {
+        byte[] data = PageFormat.encodePage(page, schema);
+        return PageFormat.decodePage(data, TABLE_NAME, page.getPageIndex(), schema, page.getPageReference());
+    }
+}
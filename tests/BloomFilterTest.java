@@ -0,0 +1,51 @@
+package Page;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Vector;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Sizing of the filters and the copies built when values are added to a page
+public class BloomFilterTest {
+
+    // a page split down to one row still gets a filter sized for a full page
+    @Test
+    public void sizedForCapacity() {
+        Vector<Comparable> values = new Vector<>();
+        values.add(1);
+        BloomFilter filter = BloomFilter.create(values, 200, 0.01);
+
+        assertTrue(filter.getBits().length * 64 >= 200 * 9);
+        assertEquals(7, filter.getHashCount());
+        assertTrue(filter.mayContain(1));
+    }
+
+    @Test
+    public void withBuildsCopy() {
+        Vector<Comparable> values = new Vector<>();
+        for (int i = 0; i < 100; i++)
+            values.add(i);
+        BloomFilter filter = BloomFilter.create(values, 200, 0.01);
+        long[] bits = filter.getBits().clone();
+
+        int added = 1000;
+        while (filter.mayContain(added))
+            added++;
+        BloomFilter widened = filter.with(added);
+
+        assertNotSame(filter, widened);
+        assertTrue(widened.mayContain(added));
+        assertFalse(filter.mayContain(added));
+        assertEquals(bits.length, filter.getBits().length);
+        for (int i = 0; i < bits.length; i++)
+            assertEquals(bits[i], filter.getBits()[i]);
+        for (int i = 0; i < 100; i++)
+            assertTrue(widened.mayContain(i));
+        assertSame(widened, widened.with(added));
+    }
+}
@@ -0,0 +1,76 @@
+import Utils.Utils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// The manifest of the metadata folder as left by a crash: a table whose createTable did not finish is dropped,
+// and a corrupt manifest is rebuilt from the csv and table files of the folder
+public class DBAppCatalogTest {
+    private File dataFolder;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        Properties config = new Properties();
+        config.setProperty("MaximumRowsCountInTablePage", "20");
+        dataFolder = TestData.createDataFolder(config);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        TestData.deleteDataFolder(dataFolder);
+    }
+
+
+    // A crash before the manifest was written leaves the csv file, with or without the table file
+    @Test
+    public void dropsTableMissingFromManifest() throws Exception {
+        DBApp dbApp = open();
+        TestData.createTable(dbApp);
+        writeManifest("#end 0\n");
+        assertTrue(new File(Utils.getTableFilePath(TestData.TABLE_NAME)).delete());
+
+        DBApp reopened = open();
+        TestData.createTable(reopened); // the name can be used again
+        reopened.insertIntoTable(TestData.TABLE_NAME, TestData.getRow(1));
+        assertEquals(1, TestData.selectAll(open()).size());
+    }
+
+    @Test
+    public void rebuildsCorruptManifest() throws Exception {
+        DBApp dbApp = open();
+        TestData.createTable(dbApp);
+        TreeMap<Integer, Double> expectedRows = new TreeMap<>();
+        for (int id = 0; id < 50; id++) {
+            dbApp.insertIntoTable(TestData.TABLE_NAME, TestData.getRow(id));
+            expectedRows.put(id, (Double) TestData.getRow(id).get("gpa"));
+        }
+        dbApp.flush();
+
+        for (String manifest : new String[]{"", TestData.TABLE_NAME + "\n", TestData.TABLE_NAME + "\n#end 2\n", "Stud"}) {
+            writeManifest(manifest);
+            assertEquals(expectedRows, TestData.selectAll(open()));
+        }
+    }
+
+
+    // Helper methods
+    private DBApp open() throws Exception {
+        DBApp dbApp = new DBApp();
+        dbApp.init();
+        return dbApp;
+    }
+
+    private void writeManifest(String manifest) throws Exception {
+        FileWriter writer = new FileWriter(new File(dataFolder, "metadata/catalog.manifest"));
+        writer.write(manifest);
+        writer.close();
+    }
+}
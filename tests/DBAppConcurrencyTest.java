@@ -0,0 +1,125 @@
+import model.SQLTerm;
+import model.Tuple;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Inserts and selects on the same table from several threads. The buffer pool is much smaller than the table and
+// the log triggers checkpoints often, so pages are evicted, read back in parallel scans and checkpointed meanwhile.
+public class DBAppConcurrencyTest {
+    private static final int WRITERS_COUNT = 4;
+    private static final int READERS_COUNT = 3;
+    private static final int ROWS_PER_WRITER = 1000;
+
+    private File dataFolder;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        Properties config = new Properties();
+        config.setProperty("MaximumRowsCountInTablePage", "20");
+        config.setProperty("MaximumPagesInBufferPool", "4");
+        config.setProperty("ParallelScanThreads", "4");
+        config.setProperty("CheckpointLogSize", "65536");
+        dataFolder = TestData.createDataFolder(config);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        TestData.deleteDataFolder(dataFolder);
+    }
+
+
+    // Every select sees rows sorted by id with the values they were inserted with, and all rows are there at the end,
+    // found by a scan, through the index and after reopening
+    @Test
+    public void concurrentInsertsAndSelects() throws Exception {
+        DBApp dbApp = new DBApp();
+        dbApp.init();
+        TestData.createTable(dbApp);
+        dbApp.createIndex(TestData.TABLE_NAME, "gpa", "gpaIndex");
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicBoolean isInserting = new AtomicBoolean(true);
+        Vector<Thread> writers = new Vector<>();
+        Vector<Thread> readers = new Vector<>();
+        for (int w = 0; w < WRITERS_COUNT; w++) {
+            int writer = w;
+            writers.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < ROWS_PER_WRITER; i++) // writers interleave their ids so they insert into the same pages
+                        dbApp.insertIntoTable(TestData.TABLE_NAME, TestData.getRow(i * WRITERS_COUNT + writer));
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }));
+        }
+        for (int r = 0; r < READERS_COUNT; r++)
+            readers.add(new Thread(() -> {
+                try {
+                    while (isInserting.get() && failure.get() == null)
+                        assertSortedRows(dbApp);
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }));
+
+        for (Thread thread : readers)
+            thread.start();
+        for (Thread thread : writers)
+            thread.start();
+        for (Thread thread : writers)
+            thread.join();
+        isInserting.set(false);
+        for (Thread thread : readers)
+            thread.join();
+        if (failure.get() != null)
+            throw new AssertionError("Concurrent operation failed", failure.get());
+
+        TreeMap<Integer, Double> expectedRows = new TreeMap<>();
+        for (int id = 0; id < WRITERS_COUNT * ROWS_PER_WRITER; id++)
+            expectedRows.put(id, (Double) TestData.getRow(id).get("gpa"));
+        assertEquals(expectedRows, TestData.selectAll(dbApp));
+        assertEquals(expectedRows.size(), countByIndex(dbApp));
+
+        dbApp.flush(); // also waits for a checkpoint still running, it would write the files read by the reopened DBApp
+        DBApp reopened = new DBApp();
+        reopened.init();
+        assertEquals(expectedRows, TestData.selectAll(reopened));
+        assertEquals(expectedRows.size(), countByIndex(reopened));
+    }
+
+
+    // Helper methods
+    private static void assertSortedRows(DBApp dbApp) throws Exception {
+        Iterator iterator = dbApp.selectFromTable(new SQLTerm[]{new SQLTerm(TestData.TABLE_NAME, "id", ">=", 0)}, new String[]{});
+        int lastId = -1;
+        while (iterator.hasNext()) {
+            Tuple tuple = (Tuple) iterator.next();
+            int id = (Integer) tuple.getClusterKeyValue();
+            assertTrue(id > lastId, "id " + id + " after " + lastId);
+            assertEquals(TestData.getRow(id).get("gpa"), tuple.getColValue("gpa"));
+            lastId = id;
+        }
+    }
+
+    private static int countByIndex(DBApp dbApp) throws Exception {
+        Iterator iterator = dbApp.selectFromTable(new SQLTerm[]{new SQLTerm(TestData.TABLE_NAME, "gpa", ">=", 0.0)}, new String[]{});
+        int count = 0;
+        while (iterator.hasNext()) {
+            iterator.next();
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,150 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Hashtable;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.Vector;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+// Replay of the write ahead log: operations done after the last checkpoint are only in the log, a new DBApp opened
+// on the same data folder, as after a crash, must redo them. The pages of the first DBApp are never flushed,
+// the log is large enough and the buffer pool holds all pages so that no checkpoint runs.
+public class DBAppRecoveryTest {
+    private File dataFolder;
+    private TreeMap<Integer, Double> expectedRows;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        Properties config = new Properties();
+        config.setProperty("MaximumRowsCountInTablePage", "20");
+        config.setProperty("MaximumPagesInBufferPool", "64");
+        config.setProperty("WriteAheadLogEnabled", "true");
+        dataFolder = TestData.createDataFolder(config);
+        expectedRows = new TreeMap<>();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        TestData.deleteDataFolder(dataFolder);
+    }
+
+
+    @Test
+    public void replaysLoggedOperations() throws Exception {
+        DBApp dbApp = open();
+        TestData.createTable(dbApp);
+        for (int id = 0; id < 200; id++)
+            insert(dbApp, id);
+
+        Vector<Hashtable<String, Object>> rows = new Vector<>();
+        for (int id = 200; id < 300; id++) {
+            rows.add(TestData.getRow(id));
+            expectedRows.put(id, (Double) TestData.getRow(id).get("gpa"));
+        }
+        dbApp.insertIntoTable(TestData.TABLE_NAME, rows);
+
+        for (int id = 0; id < 300; id += 3) {
+            Hashtable<String, Object> htblColNameValue = new Hashtable<>();
+            htblColNameValue.put("gpa", 4.5);
+            dbApp.updateTable(TestData.TABLE_NAME, String.valueOf(id), htblColNameValue);
+            expectedRows.put(id, 4.5);
+        }
+        for (int id = 0; id < 300; id += 7) {
+            Hashtable<String, Object> htblColNameValue = new Hashtable<>();
+            htblColNameValue.put("id", id);
+            dbApp.deleteFromTable(TestData.TABLE_NAME, htblColNameValue);
+            expectedRows.remove(id);
+        }
+        dbApp.deleteRangeFromTable(TestData.TABLE_NAME, 250, 270);
+        expectedRows.subMap(250, true, 270, true).clear();
+        assertEquals(expectedRows, TestData.selectAll(dbApp));
+
+        assertEquals(expectedRows, TestData.selectAll(open()));
+        assertEquals(expectedRows, TestData.selectAll(open())); // the log replayed once is not replayed again
+    }
+
+    // A record cut by a crash while it was written ends the log, the records before it are replayed
+    @Test
+    public void ignoresTornRecord() throws Exception {
+        DBApp dbApp = open();
+        TestData.createTable(dbApp);
+        for (int id = 0; id < 50; id++)
+            insert(dbApp, id);
+
+        FileOutputStream logOut = new FileOutputStream(getLastLogFile(), true);
+        logOut.write(new byte[]{0, 0, 0, 100, 1, 2, 3, 4, 5, 6, 7});
+        logOut.close();
+
+        DBApp reopened = open();
+        assertEquals(expectedRows, TestData.selectAll(reopened));
+        for (int id = 50; id < 60; id++)
+            insert(reopened, id);
+        assertEquals(expectedRows, TestData.selectAll(open()));
+    }
+
+    // A cut record that is the first one of its log file leaves no record to replay, the records logged after
+    // reopening must not be written after it
+    @Test
+    public void ignoresTornFirstRecordOfFile() throws Exception {
+        DBApp dbApp = open();
+        TestData.createTable(dbApp); // not logged, the log file is empty
+
+        FileOutputStream logOut = new FileOutputStream(getLastLogFile(), true);
+        logOut.write(new byte[]{0, 0, 0, 100, 1, 2, 3, 4, 5, 6, 7});
+        logOut.close();
+
+        DBApp reopened = open();
+        for (int id = 0; id < 10; id++)
+            insert(reopened, id);
+        assertEquals(expectedRows, TestData.selectAll(open()));
+    }
+
+    // A checkpoint file cut by a crash before it was complete is dropped, the log still has its operations
+    @Test
+    public void ignoresIncompleteCheckpoint() throws Exception {
+        DBApp dbApp = open();
+        TestData.createTable(dbApp);
+        for (int id = 0; id < 100; id++)
+            insert(dbApp, id);
+
+        File checkpointFile = new File(getTablesFolder(), "checkpoint.tmp");
+        FileOutputStream checkpointOut = new FileOutputStream(checkpointFile);
+        checkpointOut.write(new byte[]{0, 0, 0, 0, 0, 0, 0, 1, 0, 0});
+        checkpointOut.close();
+
+        assertEquals(expectedRows, TestData.selectAll(open()));
+        assertFalse(checkpointFile.exists());
+    }
+
+
+    // Helper methods
+    private DBApp open() throws Exception {
+        DBApp dbApp = new DBApp();
+        dbApp.init();
+        return dbApp;
+    }
+
+    private void insert(DBApp dbApp, int id) throws Exception {
+        dbApp.insertIntoTable(TestData.TABLE_NAME, TestData.getRow(id));
+        expectedRows.put(id, (Double) TestData.getRow(id).get("gpa"));
+    }
+
+    private File getTablesFolder() {
+        return new File(dataFolder, "Tables");
+    }
+
+    private File getLastLogFile() {
+        File lastLogFile = null;
+        for (File file : getTablesFolder().listFiles())
+            if (file.getName().matches("wal\\.log\\.[0-9]+") && (lastLogFile == null
+                    || Long.parseLong(file.getName().substring(8)) > Long.parseLong(lastLogFile.getName().substring(8))))
+                lastLogFile = file;
+        return lastLogFile;
+    }
+}
@@ -0,0 +1,119 @@
+package Utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Round trips of the LZ codec on the inputs that hit its length encodings, and of encode/decode with every codec
+public class PageCodecTest {
+
+    @Test
+    public void emptyInput() throws IOException {
+        assertLzRoundTrip(new byte[0]);
+        assertCodecsRoundTrip(new byte[0]);
+    }
+
+    @Test
+    public void inputShorterThanAMatch() throws IOException {
+        assertLzRoundTrip(new byte[]{1});
+        assertLzRoundTrip(new byte[]{1, 2, 3});
+        assertLzRoundTrip(new byte[]{1, 2, 3, 4});
+        assertLzRoundTrip(new byte[]{7, 7, 7, 7, 7});
+    }
+
+    // 15 fills the literals count of the token, 15 + 255 needs two more length bytes
+    @Test
+    public void literalRunsAroundLengthBoundaries() throws IOException {
+        for (int count : new int[]{14, 15, 16, 269, 270, 271, 524, 525, 526, 1000}) {
+            byte[] literals = getRandomBytes(count, count);
+            assertLzRoundTrip(literals);
+
+            byte[] literalsThenMatch = Arrays.copyOf(literals, count + 64); // the literals are followed by a match
+            for (int i = count; i < literalsThenMatch.length; i++)
+                literalsThenMatch[i] = literalsThenMatch[i - count];
+            assertLzRoundTrip(literalsThenMatch);
+        }
+    }
+
+    // match lengths of 4 + 15 and 4 + 15 + 255 fill the match code of the token and its first length byte
+    @Test
+    public void matchRunsAroundLengthBoundaries() throws IOException {
+        for (int matchLength : new int[]{4, 18, 19, 20, 273, 274, 275, 528, 529, 530, 100000}) {
+            byte[] data = new byte[8 + matchLength + 3];
+            System.arraycopy(getRandomBytes(8, matchLength), 0, data, 0, 8);
+            for (int i = 8; i < 8 + matchLength; i++) // copy of the previous 8 bytes, an overlapping match
+                data[i] = data[i - 8];
+            data[data.length - 1] = 1;
+            assertLzRoundTrip(data);
+        }
+
+        byte[] zeros = new byte[70000]; // one byte repeated, offset 1
+        assertLzRoundTrip(zeros);
+        assertEquals(PageCodec.LZ, PageCodec.encode(zeros, PageCodec.LZ, 0)[0]);
+    }
+
+    // matches further back than the 2 byte offset can reach are written as literals
+    @Test
+    public void matchesBeyondMaximumOffset() throws IOException {
+        byte[] block = getRandomBytes(1000, 1);
+        byte[] data = new byte[70000 + block.length];
+        System.arraycopy(block, 0, data, 0, block.length);
+        System.arraycopy(getRandomBytes(69000, 2), 0, data, block.length, 69000);
+        System.arraycopy(block, 0, data, 70000, block.length);
+        assertLzRoundTrip(data);
+    }
+
+    @Test
+    public void incompressibleData() throws IOException {
+        byte[] data = getRandomBytes(16384, 3);
+        assertLzRoundTrip(data);
+        assertCodecsRoundTrip(data);
+        assertEquals(PageCodec.NONE, PageCodec.encode(data, PageCodec.LZ, 0)[0]); // stored as is, not larger
+        assertEquals(data.length + 1, PageCodec.encode(data, PageCodec.LZ, 0).length);
+    }
+
+    @Test
+    public void compressibleData() throws IOException {
+        StringBuilder page = new StringBuilder();
+        for (int i = 0; i < 2000; i++)
+            page.append("Student").append(i % 100).append(',').append(0.7 + (i % 44) / 10.0).append(';');
+        byte[] data = page.toString().getBytes("UTF-8");
+        assertLzRoundTrip(data);
+        assertCodecsRoundTrip(data);
+    }
+
+    @Test
+    public void corruptInputFails() {
+        byte[] data = new byte[1000];
+        byte[] compressed = PageCodec.lzCompress(data);
+        assertThrows(IOException.class, () -> PageCodec.lzDecompress(compressed, 0, data.length + 1));
+        // cut in the length bytes of the match
+        assertThrows(IOException.class, () -> PageCodec.lzDecompress(Arrays.copyOf(compressed, compressed.length - 3), 0, data.length));
+    }
+
+
+    // Helper methods
+    private static void assertLzRoundTrip(byte[] data) throws IOException {
+        byte[] compressed = PageCodec.lzCompress(data);
+        assertArrayEquals(data, PageCodec.lzDecompress(compressed, 0, data.length));
+    }
+
+    private static void assertCodecsRoundTrip(byte[] data) throws IOException {
+        assertArrayEquals(data, PageCodec.decode(PageCodec.encode(data, PageCodec.NONE, 0)));
+        assertArrayEquals(data, PageCodec.decode(PageCodec.encode(data, PageCodec.LZ, 0)));
+        for (int level = 1; level <= 9; level++)
+            assertArrayEquals(data, PageCodec.decode(PageCodec.encode(data, PageCodec.DEFLATE, level)));
+    }
+
+    private static byte[] getRandomBytes(int count, long seed) {
+        byte[] bytes = new byte[count];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,71 @@
+import Utils.Utils;
+import model.SQLTerm;
+import model.Tuple;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.TreeMap;
+
+// Setup shared by the tests: a temporary data folder with its own config, and a Student table
+// (id Integer clustering key, name String, gpa Double). The config is read once per JVM, so every test class
+// runs in its own JVM and all data folders of a test class must have the same config.
+public class TestData {
+    public static final String TABLE_NAME = "Student";
+
+    // Creates the data folder and its config, and makes the application use it instead of src/main/resources
+    public static File createDataFolder(Properties config) throws IOException {
+        File dataFolder = Files.createTempDirectory("dbapp-test").toFile();
+
+        FileOutputStream configOut = new FileOutputStream(new File(dataFolder, "DBApp.config"));
+        config.store(configOut, "test");
+        configOut.close();
+
+        System.setProperty(Utils.DATA_FOLDER_PROPERTY, dataFolder.getPath());
+        return dataFolder;
+    }
+
+    public static void deleteDataFolder(File dataFolder) {
+        System.clearProperty(Utils.DATA_FOLDER_PROPERTY);
+        Utils.deleteFolder(dataFolder);
+    }
+
+    public static void createTable(DBApp dbApp) throws Exception {
+        Hashtable<String, String> htblColNameType = new Hashtable<>();
+        htblColNameType.put("id", "java.lang.Integer");
+        htblColNameType.put("name", "java.lang.String");
+        htblColNameType.put("gpa", "java.lang.Double");
+        Hashtable<String, String> htblColNameMin = new Hashtable<>();
+        htblColNameMin.put("id", "0");
+        htblColNameMin.put("name", "A");
+        htblColNameMin.put("gpa", "0.0");
+        Hashtable<String, String> htblColNameMax = new Hashtable<>();
+        htblColNameMax.put("id", "1000000");
+        htblColNameMax.put("name", "ZZZZZZZZZZZ");
+        htblColNameMax.put("gpa", "5.0");
+        dbApp.createTable(TABLE_NAME, "id", htblColNameType, htblColNameMin, htblColNameMax);
+    }
+
+    public static Hashtable<String, Object> getRow(int id) {
+        Hashtable<String, Object> htblColNameValue = new Hashtable<>();
+        htblColNameValue.put("id", id);
+        htblColNameValue.put("name", "Student" + (id % 100));
+        htblColNameValue.put("gpa", (id % 50) / 10.0);
+        return htblColNameValue;
+    }
+
+    // gpa of every row of the table by id, read with a select
+    public static TreeMap<Integer, Double> selectAll(DBApp dbApp) throws Exception {
+        TreeMap<Integer, Double> rows = new TreeMap<>();
+        Iterator iterator = dbApp.selectFromTable(new SQLTerm[]{new SQLTerm(TABLE_NAME, "id", ">=", 0)}, new String[]{});
+        while (iterator.hasNext()) {
+            Tuple tuple = (Tuple) iterator.next();
+            rows.put((Integer) tuple.getClusterKeyValue(), (Double) tuple.getColValue("gpa"));
+        }
+        return rows;
+    }
+}